@@ -4,6 +4,7 @@ module seproject {
     requires java.desktop;
     requires javafx.graphics;
     requires javafx.swing;
+    requires static jdk.incubator.vector;
 
     opens seproject to javafx.fxml;
     exports seproject;
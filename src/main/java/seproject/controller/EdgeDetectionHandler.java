@@ -1,28 +1,36 @@
 package seproject.controller;
 
-import javafx.embed.swing.SwingFXUtils;
 import javafx.scene.control.ComboBox;
 import javafx.scene.control.Label;
 import javafx.scene.image.Image;
 import javafx.scene.image.ImageView;
 import seproject.model.edgedetector.detectors.EdgeDetector;
 
-import javax.imageio.ImageIO;
-import java.io.File;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 public class EdgeDetectionHandler {
 
     private final ImageView imageView;
     private ComboBox<String> algorithmChoice;
-    private Map<String, Class<? extends EdgeDetector>> edgeAlgorithms = new HashMap<>();
+    private Map<String, EdgeDetector> edgeAlgorithms = new HashMap<>();
     private final Label statusLabel;
 
     private Image originalImage;
     private Image croppedImage;
     private Image processedImage;
-    public EdgeDetectionHandler(ImageView imageView, Label statusLabel, ComboBox<String> algorithmChoice,Map<String, Class<? extends EdgeDetector>> edgeAlgorithms) {
+
+    // งานตรวจจับขอบทำทีละงานบน thread แยก ไม่ให้ UI ค้าง
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "edge-detection");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private EdgeDetectionTask currentTask;
+
+    public EdgeDetectionHandler(ImageView imageView, Label statusLabel, ComboBox<String> algorithmChoice,Map<String, EdgeDetector> edgeAlgorithms) {
         this.imageView = imageView;
         this.statusLabel = statusLabel;
         this.algorithmChoice = algorithmChoice;
@@ -31,15 +39,17 @@ public class EdgeDetectionHandler {
     }
 
     private void initializeEdgeAlgorithms() {
-        edgeAlgorithms.put("Canny", seproject.model.edgedetector.detectors.CannyEdgeDetector.class);
-        edgeAlgorithms.put("Sobel", seproject.model.edgedetector.detectors.SobelEdgeDetector.class);
-        edgeAlgorithms.put("Laplacian", seproject.model.edgedetector.detectors.LaplacianEdgeDetector.class);
-        edgeAlgorithms.put("Prewitt", seproject.model.edgedetector.detectors.PrewittEdgeDetector.class);
-        edgeAlgorithms.put("Roberts Cross", seproject.model.edgedetector.detectors.RobertsCrossEdgeDetector.class);
-        edgeAlgorithms.put("Gaussian", seproject.model.edgedetector.detectors.GaussianEdgeDetector.class);
+        // detectors are immutable, one instance serves every click
+        edgeAlgorithms.put("Canny", new seproject.model.edgedetector.detectors.CannyEdgeDetector());
+        edgeAlgorithms.put("Sobel", new seproject.model.edgedetector.detectors.SobelEdgeDetector());
+        edgeAlgorithms.put("Laplacian", new seproject.model.edgedetector.detectors.LaplacianEdgeDetector());
+        edgeAlgorithms.put("Prewitt", new seproject.model.edgedetector.detectors.PrewittEdgeDetector());
+        edgeAlgorithms.put("Roberts Cross", new seproject.model.edgedetector.detectors.RobertsCrossEdgeDetector());
+        edgeAlgorithms.put("Gaussian", new seproject.model.edgedetector.detectors.GaussianEdgeDetector());
 
         algorithmChoice.getItems().addAll(edgeAlgorithms.keySet());
         algorithmChoice.setPromptText("Select Edge Detection Algorithm");
+        algorithmChoice.valueProperty().addListener((observable, oldAlgorithm, algorithm) -> cancelDetection());
     }
 
     public void detectEdges(String selectedAlgorithm, Image imageToProcess) {
@@ -55,64 +65,64 @@ public class EdgeDetectionHandler {
             return;
         }
 
-        try {
-            Class<? extends EdgeDetector> detectorClass = edgeAlgorithms.get(selectedAlgorithm);
-            EdgeDetector detector = detectorClass.getDeclaredConstructor().newInstance();
-
-            File tempImageFile = new File("temp_image.png");
-            ImageIO.write(SwingFXUtils.fromFXImage(imageToProcess, null), "png", tempImageFile);
-            File resultFile = detector.detectEdges(tempImageFile);
-            Image processedImage = new Image(resultFile.toURI().toString());
+        // งานเก่าที่ยังไม่เสร็จถูกยกเลิกก่อนเริ่มงานใหม่
+        cancelDetection();
+        EdgeDetectionTask task = new EdgeDetectionTask(edgeAlgorithms.get(selectedAlgorithm), imageToProcess);
+        currentTask = task;
+
+        task.messageProperty().addListener((observable, oldMessage, message) -> {
+            if (task == currentTask) {
+                statusLabel.setText("Detecting edges: " + message);
+                statusLabel.setStyle("-fx-text-fill: black;");
+            }
+        });
+        task.setOnSucceeded(event -> {
+            if (task != currentTask)
+                return;
+            currentTask = null;
+            // ไม่แสดงผลถ้าภาพถูกเปลี่ยนไประหว่างประมวลผล
+            if (imageView.getImage() != task.getSource()) {
+                statusLabel.setText("Edge detection discarded, the image has changed.");
+                statusLabel.setStyle("-fx-text-fill: red;");
+                return;
+            }
+            processedImage = task.getValue();
             imageView.setImage(processedImage);
             statusLabel.setText("Edge detection completed.");
             statusLabel.setStyle("-fx-text-fill: green;");
-        } catch (Exception e) {
-            e.printStackTrace();
+        });
+        task.setOnFailed(event -> {
+            if (task != currentTask)
+                return;
+            currentTask = null;
+            task.getException().printStackTrace();
             statusLabel.setText("Edge detection failed.");
             statusLabel.setStyle("-fx-text-fill: red;");
-        }
+        });
+
+        statusLabel.setText("Detecting edges...");
+        statusLabel.setStyle("-fx-text-fill: black;");
+        executor.execute(task);
     }
-    public void onDetectEdges() {
-        // ตรวจสอบว่ามีภาพถูกโหลดหรือครอบแล้วหรือไม่
-        if (croppedImage == null && originalImage == null) {
-            statusLabel.setText("Please load or crop an image first.");
-            statusLabel.setStyle("-fx-text-fill: red;");
-            return;
-        }
 
+    public void onDetectEdges() {
         // เลือกภาพที่ถูกครอบหรือภาพต้นฉบับ
         Image imageToProcess = (croppedImage != null) ? croppedImage : originalImage;
+        detectEdges(algorithmChoice.getValue(), imageToProcess);
+    }
 
-        // ตรวจสอบว่ามีการเลือกอัลกอริธึมการตรวจจับขอบหรือไม่
-        if (algorithmChoice.getValue() == null) {
-            statusLabel.setText("Please select an edge detection algorithm.");
-            statusLabel.setStyle("-fx-text-fill: red;");
+    /**
+     * Cancels the detection in flight, if any; its result is never shown.
+     */
+    public void cancelDetection() {
+        if (currentTask == null)
             return;
-        }
-
-        try {
-            // เรียกใช้อัลกอริธึมที่เลือกสำหรับการตรวจจับขอบ
-            Class<? extends EdgeDetector> detectorClass = edgeAlgorithms.get(algorithmChoice.getValue());
-            EdgeDetector detector = detectorClass.getDeclaredConstructor().newInstance();
-
-            // แปลงภาพเป็นไฟล์ชั่วคราวเพื่อนำไปประมวลผล
-            File tempImageFile = new File("temp_image.png");
-            ImageIO.write(SwingFXUtils.fromFXImage(imageToProcess, null), "png", tempImageFile);
-
-            // เรียกใช้การตรวจจับขอบจากไฟล์ภาพ
-            File resultFile = detector.detectEdges(tempImageFile);
-            processedImage = new Image(resultFile.toURI().toString());
-
-            // แสดงภาพที่ถูกประมวลผลบน ImageView
-            imageView.setImage(processedImage);
-            statusLabel.setText("Edge detection completed.");
-            statusLabel.setStyle("-fx-text-fill: green;");
-        } catch (Exception e) {
-            e.printStackTrace();
-            statusLabel.setText("Edge detection failed.");
-            statusLabel.setStyle("-fx-text-fill: red;");
-        }
+        currentTask.cancel();
+        currentTask = null;
+        statusLabel.setText("Edge detection cancelled.");
+        statusLabel.setStyle("-fx-text-fill: red;");
     }
+
     public void setCroppedImage(Image croppedImage) {
         this.croppedImage = croppedImage;
     }
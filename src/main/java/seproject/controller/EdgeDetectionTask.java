@@ -0,0 +1,71 @@
+package seproject.controller;
+
+import javafx.concurrent.Task;
+import javafx.scene.image.Image;
+import seproject.model.edgedetector.detectors.EdgeDetector;
+import seproject.model.edgedetector.image.BytePlane;
+import seproject.model.edgedetector.image.EdgeMask;
+import seproject.model.edgedetector.pipeline.Pipeline;
+import seproject.model.edgedetector.pipeline.Stage;
+
+/**
+ * Runs one detector on one image off the FX application thread.
+ * <P> The message names the last finished pipeline stage, and the progress
+ * is the number of finished stages out of the stage graph of the detector's
+ * edge stage. Detectors whose stages depend on intermediate results expose no
+ * such stage, so their progress stays indeterminate. cancel() interrupts the
+ * worker, which stops within the running stage, see Pipeline.
+ */
+public class EdgeDetectionTask extends Task<Image> {
+
+    private final EdgeDetector detector;
+    private final Image source;
+    private int computedStages;
+    private int stageCount;
+
+    public EdgeDetectionTask(EdgeDetector detector, Image source) {
+        this.detector = detector;
+        this.source = source;
+    }
+
+    @Override
+    protected Image call() {
+        updateMessage("reading image");
+        BytePlane input = FxImages.toGrayPlane(source);
+        if (isCancelled())
+            return null;
+
+        // นับ stage จากกราฟของ stage สุดท้าย, 0 ถ้า detector บอกไม่ได้
+        Stage<EdgeMask> edgeStage = detector.getEdgeStage();
+        stageCount = edgeStage == null ? 0 : edgeStage.getGraph().size();
+        if (stageCount > 0)
+            updateProgress(0, stageCount);
+        else
+            updateProgress(-1, 1);
+
+        // เรียกทุกครั้งที่ stage คำนวณเสร็จ บน worker thread
+        Pipeline pipeline = new Pipeline(input, stage -> {
+            computedStages++;
+            if (stageCount > 0) {
+                updateMessage(stage.getName() + " (" + computedStages + " / " + stageCount + " stages done)");
+                updateProgress(Math.min(computedStages, stageCount), stageCount);
+            } else {
+                updateMessage(stage.getName() + " (" + computedStages + " stages done)");
+            }
+        });
+        EdgeMask edges = detector.detect(pipeline).getEdgeMask();
+        if (isCancelled())
+            return null;
+
+        // ภาพผลลัพธ์ยังไม่ถูกแสดง จึงเขียน pixel บน worker thread ได้
+        updateMessage("rendering result");
+        return FxImages.toImage(edges);
+    }
+
+    /**
+     * @return the image edges are detected in
+     */
+    public Image getSource() {
+        return source;
+    }
+}
@@ -0,0 +1,88 @@
+package seproject.controller;
+
+import javafx.scene.image.Image;
+import javafx.scene.image.PixelBuffer;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.PixelReader;
+import javafx.scene.image.WritableImage;
+import javafx.scene.image.WritablePixelFormat;
+import seproject.model.edgedetector.image.BytePlane;
+import seproject.model.edgedetector.image.EdgeMask;
+import seproject.model.edgedetector.util.Grayscale.Luminance;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.util.Arrays;
+
+/**
+ * Moves pixels between JavaFX images and the edge detection model without
+ * going through AWT.
+ * <P> Both directions may run off the FX application thread, as long as the
+ * source image is not changed meanwhile and the result is not shown yet.
+ */
+public class FxImages {
+
+    // Rows read per PixelReader call, bounds the ARGB scratch array
+    private static final int CHUNK_ROWS = 64;
+
+    private static final int WHITE = 0xFFFFFFFF;
+    private static final int BLACK = 0xFF000000;
+
+    /**
+     * Reads the gray intensities of image with the channel average, the same
+     * as Grayscale.imgToGrayPlane on the SwingFXUtils copy of image.
+     */
+    public static BytePlane toGrayPlane(Image image) {
+        return toGrayPlane(image, Luminance.AVERAGE);
+    }
+
+    /**
+     * Reads the gray intensities of image in bulk through its PixelReader.
+     */
+    public static BytePlane toGrayPlane(Image image, Luminance luminance) {
+        PixelReader reader = image.getPixelReader();
+        if (reader == null)
+            throw new IllegalArgumentException("Image pixels are not readable");
+        int width = (int) image.getWidth();
+        int height = (int) image.getHeight();
+
+        BytePlane plane = new BytePlane(height, width);
+        byte[] gray = plane.getData();
+        WritablePixelFormat<IntBuffer> format = PixelFormat.getIntArgbInstance();
+        int[] argb = new int[Math.min(height, CHUNK_ROWS) * width];
+        for (int y = 0; y < height; y += CHUNK_ROWS) {
+            int rows = Math.min(CHUNK_ROWS, height - y);
+            reader.getPixels(0, y, width, rows, format, argb, 0, width);
+            int base = y * width;
+            for (int k = 0; k < rows * width; k++) {
+                int p = argb[k];
+                gray[base + k] = (byte) luminance.gray((p >> 16) & 0xFF, (p >> 8) & 0xFF, p & 0xFF);
+            }
+        }
+        return plane;
+    }
+
+    /**
+     * Renders edges black on white into an image backed by a PixelBuffer, so
+     * the pixels written here are the ones JavaFX displays.
+     */
+    public static WritableImage toImage(EdgeMask edges) {
+        int width = edges.getColumns();
+        int height = edges.getRows();
+
+        IntBuffer pixels = ByteBuffer.allocateDirect(width * height * 4).order(ByteOrder.nativeOrder()).asIntBuffer();
+        int[] row = new int[width];
+        for (int y = 0; y < height; y++) {
+            Arrays.fill(row, WHITE);
+            for (int x = edges.nextSetBit(y, 0); x >= 0; x = edges.nextSetBit(y, x + 1))
+                row[x] = BLACK;
+            pixels.put(row);
+        }
+        pixels.flip();
+
+        // opaque pixels are the same premultiplied or not
+        PixelBuffer<IntBuffer> buffer = new PixelBuffer<>(width, height, pixels, PixelFormat.getIntArgbPreInstance());
+        return new WritableImage(buffer);
+    }
+}
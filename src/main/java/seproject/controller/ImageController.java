@@ -51,7 +51,7 @@ public class ImageController {
     private ZoomHandler zoomHandler;
     private DragAndDropHandler dragAndDropHandler;
 
-    private final Map<String, Class<? extends EdgeDetector>> edgeAlgorithms = new HashMap<>();
+    private final Map<String, EdgeDetector> edgeAlgorithms = new HashMap<>();
 
 
     @FXML
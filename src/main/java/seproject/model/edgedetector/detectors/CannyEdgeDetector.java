@@ -1,79 +1,76 @@
 package seproject.model.edgedetector.detectors;
 
-import java.awt.image.BufferedImage;
-import java.io.File;
-import java.io.IOException;
-import java.util.HashSet;
-import java.util.Stack;
+import seproject.model.edgedetector.image.EdgeMask;
+import seproject.model.edgedetector.image.ShortPlane;
 
-import javax.imageio.ImageIO;
-
-import seproject.model.edgedetector.util.KMeans;
-
-import seproject.model.edgedetector.util.Hypotenuse;
-import seproject.model.edgedetector.util.Threshold;
-import seproject.model.edgedetector.imagederivatives.ConvolutionKernel;
-import seproject.model.edgedetector.imagederivatives.ImageConvolution;
-import seproject.model.edgedetector.util.NonMaximumSuppression;
-import seproject.model.edgedetector.util.Grayscale;
+import seproject.model.edgedetector.imagederivatives.GradientOperator;
+import seproject.model.edgedetector.imagederivatives.ImageGradient;
+import seproject.model.edgedetector.pipeline.Pipeline;
+import seproject.model.edgedetector.pipeline.Stage;
+import seproject.model.edgedetector.pipeline.Stages;
+import seproject.model.edgedetector.util.ThresholdStrategy;
 
 public class CannyEdgeDetector implements EdgeDetector {
 
-    private static final double[][] X_KERNEL = {{-1, 0 ,  1},
-            {-2, 0 ,  2},
-            {-1, 0 ,  1}};
-    private static final double[][] Y_KERNEL = {{1 , 2 ,  1},
-            {0 , 0 ,  0},
-            {-1, -2, -1}};
-
-    private boolean L1norm;
-    private boolean calcThreshold;
-    private int highThreshold;
-    private int lowThreshold;
-    private int minEdgeSize;
+    // Fixed thresholds of the default detector. The old 15 / 35 were tuned for
+    // magnitudes of gradients clamped to [0, 255]; the signed gradients see both
+    // edge polarities and reach 4x as far, and these keep the edge count near
+    // what 15 / 35 gave on the clamped magnitudes.
+    public static final int DEFAULT_LOW_THRESHOLD = 30;
+    public static final int DEFAULT_HIGH_THRESHOLD = 70;
 
-    private boolean[][] edges;
-    private boolean[][] strongEdges;
-    private boolean[][] weakEdges;
+    // Fixed seed so automatic thresholds are reproducible
+    public static final long KMEANS_SEED = 1;
 
-    private int rows;
-    private int columns;
+    private final boolean L1norm;
+    private final ThresholdStrategy thresholdStrategy;  // null for fixed thresholds
+    private final int highThreshold;
+    private final int lowThreshold;
+    private final int minEdgeSize;
+    private final boolean parallelHysteresis;
 
     // เปลี่ยนจาก private เป็น public
-    public CannyEdgeDetector() {}
+    // ค่าเริ่มต้นเดียวกับที่ใช้ใน detectEdges(File)
+    public CannyEdgeDetector() {
+        this(new Builder().thresholds(DEFAULT_LOW_THRESHOLD, DEFAULT_HIGH_THRESHOLD).minEdgeSize(10));
+    }
 
     // ใช้ Builder pattern ในการสร้าง CannyEdgeDetector
     private CannyEdgeDetector(Builder builder) {
         this.L1norm = builder.L1norm;
         this.minEdgeSize = builder.minEdgeSize;
-        if (!(this.calcThreshold = builder.calcThreshold)) {
-            this.lowThreshold = builder.lowThreshold;
-            this.highThreshold = builder.highThreshold;
-        }
-        findEdges(builder.image);
+        this.parallelHysteresis = builder.parallelHysteresis;
+        this.thresholdStrategy = builder.thresholdStrategy;
+        this.lowThreshold = builder.lowThreshold;
+        this.highThreshold = builder.highThreshold;
     }
 
     public static class Builder {
-        private int[][] image;
-        private boolean calcThreshold = true;
+        private ThresholdStrategy thresholdStrategy = ThresholdStrategy.kMeans(KMEANS_SEED);
         private int lowThreshold;
         private int highThreshold;
         private boolean L1norm = false;
         private int minEdgeSize = 0;
-
-        public Builder(int[][] image) {
-            this.image = image;
-        }
+        private boolean parallelHysteresis = true;
 
         public Builder thresholds(int lowThreshold, int highThreshold) {
-            if (lowThreshold > highThreshold || lowThreshold < 0 || highThreshold > 255)
+            // magnitudes of the signed gradient reach beyond 255
+            if (lowThreshold > highThreshold || lowThreshold < 0 || highThreshold > Short.MAX_VALUE)
                 throw new IllegalArgumentException("Invalid threshold values");
-            this.calcThreshold = false;
+            this.thresholdStrategy = null;
             this.lowThreshold = lowThreshold;
             this.highThreshold = highThreshold;
             return this;
         }
 
+        // คำนวณ threshold อัตโนมัติจาก histogram ของ magnitude หลัง non-maximum suppression
+        public Builder thresholdStrategy(ThresholdStrategy thresholdStrategy) {
+            if (thresholdStrategy == null)
+                throw new IllegalArgumentException("Threshold strategy must not be null");
+            this.thresholdStrategy = thresholdStrategy;
+            return this;
+        }
+
         public Builder L1norm(boolean L1norm) {
             this.L1norm = L1norm;
             return this;
@@ -84,148 +81,45 @@ public class CannyEdgeDetector implements EdgeDetector {
             return this;
         }
 
-        public CannyEdgeDetector build() {
-            return new CannyEdgeDetector(this);
-        }
-    }
-
-    private void findEdges(int[][] image) {
-        ImageConvolution gaussianConvolution = new ImageConvolution(image, ConvolutionKernel.GAUSSIAN_KERNEL);
-        int[][] smoothedImage = gaussianConvolution.getConvolvedImage();
-
-        ImageConvolution x_ic = new ImageConvolution(smoothedImage, X_KERNEL);
-        ImageConvolution y_ic = new ImageConvolution(smoothedImage, Y_KERNEL);
-
-        int[][] x_imageConvolution = x_ic.getConvolvedImage();
-        int[][] y_imageConvolution = y_ic.getConvolvedImage();
-
-        rows = x_imageConvolution.length;
-        columns = x_imageConvolution[0].length;
-
-        int[][] mag = new int[rows][columns];
-        NonMaximumSuppression.EdgeDirection[][] angle = new NonMaximumSuppression.EdgeDirection[rows][columns];
-        for (int i = 0; i < rows; i++)
-            for (int j = 0; j < columns; j++) {
-                mag[i][j] = hypotenuse(x_imageConvolution[i][j], y_imageConvolution[i][j]);
-                angle[i][j] = direction(x_imageConvolution[i][j], y_imageConvolution[i][j]);
-            }
-
-        edges = new boolean[rows][columns];
-        weakEdges = new boolean[rows][columns];
-        strongEdges = new boolean[rows][columns];
-
-        for (int i = 0; i < rows; i++) {
-            for (int j = 0; j < columns; j++) {
-                if (NonMaximumSuppression.nonMaximumSuppression(mag, angle[i][j], i, j, lowThreshold)) {
-                    mag[i][j] = 0;
-                }
-            }
-        }
-
-        if (calcThreshold) {
-            int k = 3;
-            double[][] points = new double[rows * columns][1];
-            int counter = 0;
-            for (int i = 0; i < rows; i++)
-                for (int j = 0; j < columns; j++)
-                    points[counter++][0] = mag[i][j];
-
-            KMeans clustering = new KMeans.Builder(k, points)
-                    .iterations(10)
-                    .epsilon(.01)
-                    .useEpsilon(true)
-                    .build();
-            double[][] centroids = clustering.getCentroids();
-
-            boolean b = centroids[0][0] < centroids[1][0];
-            lowThreshold = (int) (b ? centroids[0][0] : centroids[1][0]);
-            highThreshold = (int) (b ? centroids[1][0] : centroids[0][0]);
-        }
-
-        HashSet<Integer> strongSet = new HashSet<>();
-        HashSet<Integer> weakSet = new HashSet<>();
-
-        int index = 0;
-        for (int r = 0; r < rows; r++) {
-            for (int c = 0; c < columns; c++) {
-                if (mag[r][c] >= highThreshold) {
-                    strongSet.add(index);
-                    strongEdges[r][c] = true;
-                } else if (mag[r][c] >= lowThreshold) {
-                    weakSet.add(index);
-                    weakEdges[r][c] = true;
-                }
-                index++;
-            }
+        // เลือกใช้ hysteresis แบบขนาน (union-find) หรือแบบ flood fill บนเธรดเดียว
+        public Builder parallelHysteresis(boolean parallelHysteresis) {
+            this.parallelHysteresis = parallelHysteresis;
+            return this;
         }
 
-        boolean[][] marked = new boolean[rows][columns];
-        Stack<Integer> toAdd = new Stack<>();
-
-        for (int strongIndex : strongSet) {
-            dfs(ind2sub(strongIndex, columns)[0], ind2sub(strongIndex, columns)[1], weakSet, strongSet, marked, toAdd);
-            if (toAdd.size() >= minEdgeSize)
-                for (int edgeIndex : toAdd)
-                    edges[ind2sub(edgeIndex, columns)[0]][ind2sub(edgeIndex, columns)[1]] = true;
-            toAdd.clear();
-        }
-    }
-
-    private void dfs(int r, int c, HashSet<Integer> weakSet, HashSet<Integer> strongSet, boolean[][] marked, Stack<Integer> toAdd) {
-        if (r < 0 || r >= rows || c < 0 || c >= columns || marked[r][c])
-            return;
-
-        marked[r][c] = true;
-        int index = sub2ind(r, c, columns);
-        if (weakSet.contains(index) || strongSet.contains(index)) {
-            toAdd.push(sub2ind(r, c, columns));
-
-            dfs(r - 1, c - 1, weakSet, strongSet, marked, toAdd);
-            dfs(r - 1, c, weakSet, strongSet, marked, toAdd);
-            dfs(r - 1, c + 1, weakSet, strongSet, marked, toAdd);
-            dfs(r, c - 1, weakSet, strongSet, marked, toAdd);
-            dfs(r, c + 1, weakSet, strongSet, marked, toAdd);
-            dfs(r + 1, c - 1, weakSet, strongSet, marked, toAdd);
-            dfs(r + 1, c, weakSet, strongSet, marked, toAdd);
-            dfs(r + 1, c + 1, weakSet, strongSet, marked, toAdd);
+        public CannyEdgeDetector build() {
+            return new CannyEdgeDetector(this);
         }
     }
 
-    private static int[] ind2sub(int index, int columns) {
-        return new int[] {index / columns, index - columns * (index / columns)};
-    }
-
-    private static int sub2ind(int r, int c, int columns) {
-        return columns * r + c;
-    }
-
-    private int hypotenuse(int x, int y) {
-        return (int) (L1norm ? Hypotenuse.L1(x, y) : Hypotenuse.L2(x, y));
-    }
-
-    private NonMaximumSuppression.EdgeDirection direction(int G_x, int G_y) {
-        return NonMaximumSuppression.EdgeDirection.getDirection(G_x, G_y);
+    @Override
+    public EdgeDetectionResult detect(Pipeline pipeline) {
+        if (thresholdStrategy == null)
+            return new EdgeDetectionResult(pipeline.get(getEdgeStage()), lowThreshold, highThreshold);
+
+        // เลือก threshold จาก magnitude ที่ผ่าน suppression แล้ว ซึ่งยังไม่รู้ low จึง suppress ด้วย 0
+        Stage<ShortPlane> suppressed = Stages.suppressed(gradient(), 0);
+        ThresholdStrategy.Thresholds thresholds = pipeline.get(Stages.thresholds(suppressed, thresholdStrategy));
+        int low = thresholds.getLow();
+        int high = thresholds.getHigh();
+
+        EdgeMask edges = pipeline.get(Stages.hysteresis(suppressed, low, high, minEdgeSize, parallelHysteresis));
+        return new EdgeDetectionResult(edges, low, high);
     }
 
-    public boolean[][] getEdges() {
-        return edges;
+    /**
+     * @return the hysteresis stage for fixed thresholds, or null if a
+     * threshold strategy picks them while the detector runs
+     */
+    @Override
+    public Stage<EdgeMask> getEdgeStage() {
+        if (thresholdStrategy != null)
+            return null;
+        return Stages.hysteresis(Stages.suppressed(gradient(), lowThreshold), lowThreshold, highThreshold,
+                minEdgeSize, parallelHysteresis);
     }
 
-    @Override
-    public File detectEdges(File imageFile) throws IOException {
-        BufferedImage originalImage = ImageIO.read(imageFile);
-        int[][] pixels = Grayscale.imgToGrayPixels(originalImage);
-
-        CannyEdgeDetector detector = new CannyEdgeDetector.Builder(pixels)
-                .minEdgeSize(10)
-                .thresholds(15, 35)
-                .L1norm(false)
-                .build();
-
-        boolean[][] edges = detector.getEdges();
-        BufferedImage edgeImage = Threshold.applyThresholdReversed(edges);
-        File result = new File("canny_result.png");
-        ImageIO.write(edgeImage, "png", result);
-        return result;
+    private Stage<ImageGradient> gradient() {
+        return Stages.gradient(Stages.SMOOTHED, GradientOperator.SOBEL, L1norm, true);
     }
 }
@@ -0,0 +1,68 @@
+package seproject.model.edgedetector.detectors;
+
+import java.awt.image.BufferedImage;
+
+import seproject.model.edgedetector.image.EdgeMask;
+import seproject.model.edgedetector.util.Threshold;
+
+/**
+ * Outcome of one detection run: the edge pixels and the thresholds used to
+ * find them. Detectors with a single threshold report it as both the low
+ * and the high threshold.
+ */
+public final class EdgeDetectionResult {
+
+    private final EdgeMask edges;
+    private final int lowThreshold;
+    private final int highThreshold;
+
+    public EdgeDetectionResult(EdgeMask edges, int lowThreshold, int highThreshold) {
+        this.edges = edges;
+        this.lowThreshold = lowThreshold;
+        this.highThreshold = highThreshold;
+    }
+
+    /**
+     * @return mask of the edge pixels; it may be shared with the pipeline
+     * that produced it, so copy it before modifying
+     */
+    public EdgeMask getEdgeMask() {
+        return edges;
+    }
+
+    /**
+     * @return edge raster indexed as [row][column], as a new array
+     */
+    public boolean[][] getEdges() {
+        return edges.toArray();
+    }
+
+    public int getLowThreshold() {
+        return lowThreshold;
+    }
+
+    public int getHighThreshold() {
+        return highThreshold;
+    }
+
+    /**
+     * @return # of rows
+     */
+    public int getRows() {
+        return edges.getRows();
+    }
+
+    /**
+     * @return # of columns
+     */
+    public int getColumns() {
+        return edges.getColumns();
+    }
+
+    /**
+     * @return an image with black edges on a white background
+     */
+    public BufferedImage toImage() {
+        return Threshold.applyThresholdReversed(edges);
+    }
+}
@@ -1,7 +1,137 @@
 package seproject.model.edgedetector.detectors;
 
+import java.awt.image.BufferedImage;
 import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
 
+import seproject.model.edgedetector.image.BytePlane;
+import seproject.model.edgedetector.image.EdgeMask;
+import seproject.model.edgedetector.io.Netpbm;
+import seproject.model.edgedetector.io.OutputSink;
+import seproject.model.edgedetector.io.TempFileSink;
+import seproject.model.edgedetector.pipeline.Pipeline;
+import seproject.model.edgedetector.pipeline.Stage;
+
+/**
+ * A configured edge detection algorithm.
+ * <P> Implementations are immutable and keep no state between runs, so one
+ * instance can process any number of images, also concurrently; everything
+ * a run finds is returned in its EdgeDetectionResult.
+ */
 public interface EdgeDetector {
-    File detectEdges(File inputFile) throws Exception;
+    /**
+     * Detects the edges of an image file and writes them, black on white, to sink.
+     * Binary PGM input skips ImageIO, see Pipeline.read.
+     *
+     * @param format ImageIO format name of the output, e.g. "png", or "pbm"
+     * @return what sink returns for the written image
+     */
+    default <R> R detectEdges(File inputFile, OutputSink<R> sink, String format) throws IOException {
+        return sink.write(detect(Pipeline.read(inputFile.toPath())).toImage(), format);
+    }
+
+    /**
+     * Detects the edges of an image file into a binary PBM file, edges black,
+     * without an intermediate image.
+     *
+     * @return the result written to outputFile
+     */
+    default EdgeDetectionResult detectEdges(Path inputFile, Path outputFile) throws IOException {
+        EdgeDetectionResult result = detect(Pipeline.read(inputFile));
+        Netpbm.writePBM(result.getEdgeMask(), outputFile);
+        return result;
+    }
+
+    /**
+     * Detects the edges of an image file into a new uniquely named temporary
+     * PNG file of TempFileSink.shared(). The file is deleted when the JVM
+     * exits; TempFileSink.shared().delete() frees it earlier.
+     *
+     * @return the PNG file
+     */
+    default File detectEdges(File inputFile) throws IOException {
+        return detectEdges(inputFile, TempFileSink.shared(), "png").toFile();
+    }
+
+    /**
+     * Finds the edges of a grayscale image that is already in memory.
+     *
+     * @param image grayscale intensities
+     * @return edge raster indexed as [row][column], true where a pixel belongs to an edge
+     */
+    default boolean[][] findEdges(BytePlane image) {
+        return findEdgeMask(image).toArray();
+    }
+
+    /**
+     * Finds the edges of a grayscale image that is already in memory, packed
+     * 64 pixels to a word.
+     *
+     * @param image grayscale intensities
+     * @return mask of the pixels that belong to an edge
+     */
+    default EdgeMask findEdgeMask(BytePlane image) {
+        return detect(image).getEdgeMask();
+    }
+
+    /**
+     * Finds the edges of the image of a pipeline, packed 64 pixels to a word.
+     *
+     * @param pipeline stages run on the grayscale image
+     * @return mask of the pixels that belong to an edge
+     */
+    default EdgeMask findEdgeMask(Pipeline pipeline) {
+        return detect(pipeline).getEdgeMask();
+    }
+
+    /**
+     * Detects the edges of a grayscale image that is already in memory.
+     *
+     * @param image grayscale intensities
+     * @return edges and thresholds of this run
+     */
+    default EdgeDetectionResult detect(BytePlane image) {
+        return detect(new Pipeline(image));
+    }
+
+    /**
+     * Detects the edges of the image of a pipeline. Stages the pipeline has
+     * already computed, e.g. for another detector, are reused.
+     *
+     * @param pipeline stages run on the grayscale image
+     * @return edges and thresholds of this run
+     */
+    EdgeDetectionResult detect(Pipeline pipeline);
+
+    /**
+     * The last stage detect() computes, whose graph holds every stage of a
+     * run, e.g. to report progress.
+     *
+     * @return stage computing the edge mask, or null if the stages depend on
+     * intermediate results
+     */
+    default Stage<EdgeMask> getEdgeStage() {
+        return null;
+    }
+
+    /**
+     * Finds the edges of a grayscale image that is already in memory.
+     *
+     * @param pixels grayscale intensities indexed as [row][column]
+     * @return edge raster, true where a pixel belongs to an edge
+     */
+    default boolean[][] findEdges(int[][] pixels) {
+        return findEdges(BytePlane.fromArray(pixels));
+    }
+
+    /**
+     * Runs edge detection on an in-memory image without going through the file system.
+     *
+     * @param image the input image
+     * @return an image with black edges on a white background
+     */
+    default BufferedImage detectEdges(BufferedImage image) {
+        return detect(Pipeline.of(image)).toImage();
+    }
 }
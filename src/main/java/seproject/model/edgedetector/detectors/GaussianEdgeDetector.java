@@ -1,72 +1,44 @@
 package seproject.model.edgedetector.detectors;
 
-import java.awt.image.BufferedImage;
-import java.io.File;
-import java.io.IOException;
-import javax.imageio.ImageIO;
-
-import seproject.model.edgedetector.imagederivatives.ConvolutionKernel;
-import seproject.model.edgedetector.imagederivatives.ImageConvolution;
-import seproject.model.edgedetector.util.Grayscale;
-import seproject.model.edgedetector.util.Threshold;
+import seproject.model.edgedetector.image.EdgeMask;
+import seproject.model.edgedetector.image.ShortPlane;
+import seproject.model.edgedetector.imagederivatives.GradientOperator;
+import seproject.model.edgedetector.pipeline.Pipeline;
+import seproject.model.edgedetector.pipeline.Stage;
+import seproject.model.edgedetector.pipeline.Stages;
+import seproject.model.edgedetector.util.ThresholdStrategy;
 
 public class GaussianEdgeDetector implements EdgeDetector {
 
-    private static final double[][] X_KERNEL = {{-1, 0, 1},
-            {-2, 0, 2},
-            {-1, 0, 1}};
-    private static final double[][] Y_KERNEL = {{1, 2, 1},
-            {0, 0, 0},
-            {-1, -2, -1}};
-
-    private boolean[][] edges;
-    private int rows;
-    private int columns;
-
-    @Override
-    public File detectEdges(File imageFile) throws IOException {
-        BufferedImage originalImage = ImageIO.read(imageFile);
-        int[][] pixels = Grayscale.imgToGrayPixels(originalImage);
-
-        // Step 1: Gaussian Smoothing (Blur)
-        ImageConvolution gaussianConvolution = new ImageConvolution(pixels, ConvolutionKernel.GAUSSIAN_KERNEL);
-        int[][] smoothedImage = gaussianConvolution.getConvolvedImage();
-
-        // Step 2: Apply Sobel Operator (Gradient Calculation)
-        ImageConvolution x_ic = new ImageConvolution(smoothedImage, X_KERNEL);
-        ImageConvolution y_ic = new ImageConvolution(smoothedImage, Y_KERNEL);
+    private final ThresholdStrategy thresholdStrategy;
 
-        int[][] x_imageConvolution = x_ic.getConvolvedImage();
-        int[][] y_imageConvolution = y_ic.getConvolvedImage();
+    public GaussianEdgeDetector() {
+        this(ThresholdStrategy.mean());
+    }
 
-        rows = x_imageConvolution.length;
-        columns = x_imageConvolution[0].length;
+    /**
+     * @param thresholdStrategy picks the threshold from the magnitude histogram
+     */
+    public GaussianEdgeDetector(ThresholdStrategy thresholdStrategy) {
+        this.thresholdStrategy = thresholdStrategy;
+    }
 
-        // Step 3: Compute gradient magnitude
-        int[][] mag = new int[rows][columns];
-        for (int i = 0; i < rows; i++) {
-            for (int j = 0; j < columns; j++) {
-                mag[i][j] = (int) Math.hypot(x_imageConvolution[i][j], y_imageConvolution[i][j]);
-            }
-        }
+    @Override
+    public EdgeDetectionResult detect(Pipeline pipeline) {
+        int threshold = pipeline.get(Stages.thresholds(magnitude(), thresholdStrategy)).getHigh();
+        return new EdgeDetectionResult(pipeline.get(getEdgeStage()), threshold, threshold);
+    }
 
-        // Step 4: Thresholding
-        edges = new boolean[rows][columns];
-        int threshold = Threshold.calcThresholdEdges(mag);  // Automatically calculate a threshold
-        for (int i = 0; i < rows; i++) {
-            for (int j = 0; j < columns; j++) {
-                edges[i][j] = mag[i][j] >= threshold;
-            }
-        }
+    @Override
+    public Stage<EdgeMask> getEdgeStage() {
+        Stage<ShortPlane> mag = magnitude();
 
-        // Step 5: Create output image
-        BufferedImage edgeImage = Threshold.applyThresholdReversed(edges);
-        File result = new File("gaussian_edge_result.png");
-        ImageIO.write(edgeImage, "png", result);
-        return result;
+        // Step 3: Thresholding
+        return Stages.atLeast(mag, Stages.thresholds(mag, thresholdStrategy));
     }
 
-    public boolean[][] getEdges() {
-        return edges;
+    // Step 1 + 2: Gaussian Smoothing (Blur), then Sobel Operator (Gradient Calculation and magnitude in one sweep)
+    private Stage<ShortPlane> magnitude() {
+        return Stages.magnitude(Stages.gradient(Stages.SMOOTHED, GradientOperator.SOBEL, false, false));
     }
 }
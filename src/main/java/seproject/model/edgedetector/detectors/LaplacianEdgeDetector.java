@@ -1,84 +1,64 @@
 package seproject.model.edgedetector.detectors;
 
-import java.awt.image.BufferedImage;
-import java.io.File;
-import java.io.IOException;
-import javax.imageio.ImageIO;
-import seproject.model.edgedetector.util.Threshold;
-import seproject.model.edgedetector.imagederivatives.ConvolutionKernel;
+import seproject.model.edgedetector.util.ThresholdStrategy;
+import seproject.model.edgedetector.image.EdgeMask;
+import seproject.model.edgedetector.image.ShortPlane;
 import seproject.model.edgedetector.imagederivatives.ImageConvolution;
-import seproject.model.edgedetector.util.Grayscale;
+import seproject.model.edgedetector.imagederivatives.Padding;
+import seproject.model.edgedetector.pipeline.Pipeline;
+import seproject.model.edgedetector.pipeline.Stage;
+import seproject.model.edgedetector.pipeline.Stages;
 
 public class LaplacianEdgeDetector implements EdgeDetector {
 
-    private boolean[][] edges;  // ผลลัพธ์ขอบภาพ
-    private int threshold;      // ค่าธรชโฮลด์สำหรับขอบ
-    private double[][] kernel = { // Laplacian kernel
+    private final ThresholdStrategy thresholdStrategy; // วิธีเลือก threshold
+    private final double[][] kernel = { // Laplacian kernel
             {-1, -1, -1},
             {-1,  8, -1},
             {-1, -1, -1}
     };
+    // ชื่อของ kernel ใน key ของ stage, array เทียบกันด้วย reference
+    private static final String KERNEL_ID = "laplacian3x3";
 
     // คอนสตรัคเตอร์แบบไม่มีพารามิเตอร์
-    public LaplacianEdgeDetector() {}
-
-    // คอนสตรัคเตอร์ที่รับไฟล์ภาพ
-    public LaplacianEdgeDetector(String filePath) throws IOException {
-        BufferedImage originalImage = ImageIO.read(new File(filePath));
-        int[][] grayImage = Grayscale.imgToGrayPixels(originalImage);
-        findEdges(grayImage);
+    public LaplacianEdgeDetector() {
+        this(ThresholdStrategy.mean());
     }
 
-    // คอนสตรัคเตอร์ที่รับภาพเป็น array
-    public LaplacianEdgeDetector(int[][] image) {
-        findEdges(image);
+    // คอนสตรัคเตอร์ที่เลือกวิธีคำนวณ threshold
+    public LaplacianEdgeDetector(ThresholdStrategy thresholdStrategy) {
+        this.thresholdStrategy = thresholdStrategy;
     }
 
     // ฟังก์ชันค้นหาขอบภาพ
-    private void findEdges(int[][] image) {
-        ImageConvolution gaussianConvolution = new ImageConvolution(image, ConvolutionKernel.GAUSSIAN_KERNEL);
-        int[][] smoothedImage = gaussianConvolution.getConvolvedImage();
-
-        ImageConvolution laplacianConvolution = new ImageConvolution(smoothedImage, kernel);
-        int[][] convolvedImage = laplacianConvolution.getConvolvedImage();
-
-        int rows = convolvedImage.length;
-        int columns = convolvedImage[0].length;
-
+    @Override
+    public EdgeDetectionResult detect(Pipeline pipeline) {
         // คำนวณ threshold เพื่อใช้ในการหาขอบ
-        threshold = Threshold.calcThresholdEdges(convolvedImage);
+        int threshold = pipeline.get(Stages.thresholds(response(), thresholdStrategy)).getHigh();
 
-        // กำหนดขอบภาพใน array
-        edges = new boolean[rows][columns];
-        for (int i = 0; i < rows; i++) {
-            for (int j = 0; j < columns; j++) {
-                edges[i][j] = Math.abs(convolvedImage[i][j]) > threshold;
-            }
-        }
+        // กำหนดขอบภาพใน mask (response > threshold)
+        return new EdgeDetectionResult(pipeline.get(getEdgeStage()), threshold, threshold);
     }
 
-    // ฟังก์ชันคืนค่า edges
-    public boolean[][] getEdges() {
-        return edges;
-    }
-
-    // ฟังก์ชันคืนค่า threshold
-    public int getThreshold() {
-        return threshold;
-    }
-
-    // ฟังก์ชัน detectEdges ที่ใช้ใน ImageController
     @Override
-    public File detectEdges(File imageFile) throws IOException {
-        BufferedImage originalImage = ImageIO.read(imageFile);
-        int[][] grayImage = Grayscale.imgToGrayPixels(originalImage);
-
-        LaplacianEdgeDetector detector = new LaplacianEdgeDetector(grayImage);
-        boolean[][] edges = detector.getEdges();
+    public Stage<EdgeMask> getEdgeStage() {
+        Stage<ShortPlane> response = response();
+        return Stages.above(response, Stages.thresholds(response, thresholdStrategy));
+    }
 
-        BufferedImage edgeImage = Threshold.applyThresholdReversed(edges);
-        File result = new File("laplacian_result.png");
-        ImageIO.write(edgeImage, "png", result);
-        return result;
+    // ค่าสัมบูรณ์ของ Laplacian บนภาพที่ผ่าน Gaussian แล้ว
+    private Stage<ShortPlane> response() {
+        return Stage.of("laplacian", Stages.SMOOTHED, smoothedImage -> {
+            ImageConvolution laplacianConvolution = new ImageConvolution(smoothedImage, kernel, Padding.SAME, ImageConvolution.Output.SIGNED);
+            ShortPlane signed = laplacianConvolution.getSignedPlane();
+
+            // ใช้ค่าสัมบูรณ์ของ response เพื่อให้ได้ขอบทั้งด้านบวกและด้านลบ
+            for (int i = 0; i < signed.getRows(); i++) {
+                for (int j = 0; j < signed.getColumns(); j++) {
+                    signed.set(i, j, Math.abs(signed.get(i, j)));
+                }
+            }
+            return signed;
+        }, KERNEL_ID);
     }
-}
\ No newline at end of file
+}
@@ -1,77 +1,44 @@
 package seproject.model.edgedetector.detectors;
 
-import java.awt.image.BufferedImage;
-import java.io.File;
-import java.io.IOException;
-
-import javax.imageio.ImageIO;
-
-import seproject.model.edgedetector.imagederivatives.ImageConvolution;
-import seproject.model.edgedetector.util.Grayscale;
-import seproject.model.edgedetector.util.Threshold;
+import seproject.model.edgedetector.image.EdgeMask;
+import seproject.model.edgedetector.image.ShortPlane;
+import seproject.model.edgedetector.imagederivatives.GradientOperator;
+import seproject.model.edgedetector.pipeline.Pipeline;
+import seproject.model.edgedetector.pipeline.Stage;
+import seproject.model.edgedetector.pipeline.Stages;
+import seproject.model.edgedetector.util.ThresholdStrategy;
 
 public class SobelEdgeDetector implements EdgeDetector {
 
-    private boolean[][] edges;
-    private int rows;
-    private int columns;
-    private int threshold;
+    private final ThresholdStrategy thresholdStrategy;
 
-    // Sobel Kernels for X and Y direction
-    private static final double[][] X_KERNEL = {
-            {-1, 0, 1},
-            {-2, 0, 2},
-            {-1, 0, 1}
-    };
+    public SobelEdgeDetector() {
+        this(ThresholdStrategy.mean());
+    }
 
-    private static final double[][] Y_KERNEL = {
-            {1, 2, 1},
-            {0, 0, 0},
-            {-1, -2, -1}
-    };
+    /**
+     * @param thresholdStrategy picks the threshold from the magnitude histogram
+     */
+    public SobelEdgeDetector(ThresholdStrategy thresholdStrategy) {
+        this.thresholdStrategy = thresholdStrategy;
+    }
 
     @Override
-    public File detectEdges(File imageFile) throws IOException {
-        // Step 1: Load the image and convert it to grayscale
-        BufferedImage originalImage = ImageIO.read(imageFile);
-        int[][] pixels = Grayscale.imgToGrayPixels(originalImage);
-
-        // Step 2: Apply Sobel Operator (Gradient Calculation)
-        ImageConvolution x_ic = new ImageConvolution(pixels, X_KERNEL);
-        ImageConvolution y_ic = new ImageConvolution(pixels, Y_KERNEL);
-
-        int[][] x_imageConvolution = x_ic.getConvolvedImage();
-        int[][] y_imageConvolution = y_ic.getConvolvedImage();
-
-        rows = x_imageConvolution.length;
-        columns = x_imageConvolution[0].length;
-
-        // Step 3: Compute gradient magnitude for edge detection
-        int[][] mag = new int[rows][columns];
-        for (int i = 0; i < rows; i++) {
-            for (int j = 0; j < columns; j++) {
-                mag[i][j] = (int) Math.hypot(x_imageConvolution[i][j], y_imageConvolution[i][j]);
-            }
-        }
+    public EdgeDetectionResult detect(Pipeline pipeline) {
+        int threshold = pipeline.get(Stages.thresholds(magnitude(), thresholdStrategy)).getHigh();
+        return new EdgeDetectionResult(pipeline.get(getEdgeStage()), threshold, threshold);
+    }
 
-        // Step 4: Apply Thresholding to determine edges
-        edges = new boolean[rows][columns];
-        threshold = Threshold.calcThresholdEdges(mag); // Automatically calculate the threshold
-        for (int i = 0; i < rows; i++) {
-            for (int j = 0; j < columns; j++) {
-                edges[i][j] = mag[i][j] >= threshold;
-            }
-        }
+    @Override
+    public Stage<EdgeMask> getEdgeStage() {
+        Stage<ShortPlane> mag = magnitude();
 
-        // Step 5: Create an output image to visualize the detected edges
-        BufferedImage edgeImage = Threshold.applyThresholdReversed(edges);
-        File result = new File("sobel_edge_result.png");
-        ImageIO.write(edgeImage, "png", result);
-        return result;
+        // Step 3: Apply Thresholding to determine edges
+        return Stages.atLeast(mag, Stages.thresholds(mag, thresholdStrategy));
     }
 
-    // Getter for edges
-    public boolean[][] getEdges() {
-        return edges;
+    // Step 2: Apply Sobel Operator (Gradient Calculation and magnitude in one sweep)
+    private Stage<ShortPlane> magnitude() {
+        return Stages.magnitude(Stages.gradient(Stages.IMAGE, GradientOperator.SOBEL, false, false));
     }
 }
@@ -0,0 +1,69 @@
+package seproject.model.edgedetector.image;
+
+/**
+ * Plane of unsigned 8-bit samples (0..255), used for grayscale and smoothed images.
+ */
+public class BytePlane extends Plane {
+
+    private final byte[] data;
+
+    public BytePlane(int rows, int columns) {
+        this(new byte[size(rows, columns)], rows, columns, 0, columns);
+    }
+
+    public BytePlane(byte[] data, int rows, int columns, int offset, int stride) {
+        super(rows, columns, offset, stride, data.length);
+        this.data = data;
+    }
+
+    /**
+     * Copies a 2D array into a new plane, clamping each value to [0, 255].
+     */
+    public static BytePlane fromArray(int[][] pixels) {
+        BytePlane plane = new BytePlane(pixels.length, pixels[0].length);
+        for (int i = 0; i < plane.rows; i++) {
+            int index = plane.index(i, 0);
+            for (int j = 0; j < plane.columns; j++) {
+                int value = pixels[i][j];
+                plane.data[index + j] = (byte) ((value > 255) ? 255 : (value < 0) ? 0 : value);
+            }
+        }
+        return plane;
+    }
+
+    /**
+     * @return the samples as a new 2D array indexed [row][column]
+     */
+    public int[][] toArray() {
+        int[][] pixels = new int[rows][columns];
+        for (int i = 0; i < rows; i++) {
+            int index = index(i, 0);
+            for (int j = 0; j < columns; j++)
+                pixels[i][j] = data[index + j] & 0xFF;
+        }
+        return pixels;
+    }
+
+    public int get(int row, int col) {
+        return data[index(row, col)] & 0xFF;
+    }
+
+    public void set(int row, int col, int value) {
+        data[index(row, col)] = (byte) value;
+    }
+
+    /**
+     * @return a view of the given region that shares this plane's samples
+     */
+    public BytePlane subPlane(int row, int col, int rows, int columns) {
+        checkRegion(row, col, rows, columns);
+        return new BytePlane(data, rows, columns, index(row, col), stride);
+    }
+
+    /**
+     * @return the backing array
+     */
+    public byte[] getData() {
+        return data;
+    }
+}
@@ -0,0 +1,212 @@
+package seproject.model.edgedetector.image;
+
+/**
+ * Binary edge raster packed 64 pixels to a long.
+ * <P> Every row starts at a new word, so rows can be written concurrently and
+ * the logic operations work a word at a time. Bits past the last column of a
+ * row are always 0. Pixel (row, col) is bit (col % 64) of word
+ * {@code row * wordsPerRow + col / 64}.
+ */
+public class EdgeMask {
+
+    private final int rows;         // # of rows in the mask
+    private final int columns;      // # of columns in the mask
+    private final int wordsPerRow;  // # of longs per row
+    private final long[] words;
+
+    public EdgeMask(int rows, int columns) {
+        if (rows <= 0 || columns <= 0)
+            throw new IllegalArgumentException("Mask must have at least one row and one column");
+        this.rows = rows;
+        this.columns = columns;
+        this.wordsPerRow = (columns + 63) >>> 6;
+        this.words = new long[rows * wordsPerRow];
+    }
+
+    /**
+     * Packs a 2D array into a new mask.
+     */
+    public static EdgeMask fromArray(boolean[][] edges) {
+        EdgeMask mask = new EdgeMask(edges.length, edges[0].length);
+        for (int i = 0; i < mask.rows; i++) {
+            int index = i * mask.wordsPerRow;
+            for (int j = 0; j < mask.columns; j++)
+                if (edges[i][j])
+                    mask.words[index + (j >>> 6)] |= 1L << j;
+        }
+        return mask;
+    }
+
+    /**
+     * @return the mask as a new 2D array indexed [row][column]
+     */
+    public boolean[][] toArray() {
+        boolean[][] edges = new boolean[rows][columns];
+        for (int i = 0; i < rows; i++)
+            for (int j = nextSetBit(i, 0); j >= 0; j = nextSetBit(i, j + 1))
+                edges[i][j] = true;
+        return edges;
+    }
+
+    public boolean get(int row, int col) {
+        checkPixel(row, col);
+        return (words[row * wordsPerRow + (col >>> 6)] & (1L << col)) != 0;
+    }
+
+    /**
+     * Sets or clears a single pixel. Not atomic: concurrent writers must own
+     * whole rows.
+     */
+    public void set(int row, int col, boolean edge) {
+        checkPixel(row, col);
+        int index = row * wordsPerRow + (col >>> 6);
+        if (edge)
+            words[index] |= 1L << col;
+        else
+            words[index] &= ~(1L << col);
+    }
+
+    /**
+     * @return column of the first edge pixel of row at or after col, or -1 if there is none
+     */
+    public int nextSetBit(int row, int col) {
+        if (col >= columns)
+            return -1;
+        int index = row * wordsPerRow + (col >>> 6);
+        int end = (row + 1) * wordsPerRow;
+        long word = words[index] & (-1L << col);
+        while (word == 0) {
+            if (++index == end)
+                return -1;
+            word = words[index];
+        }
+        return ((index - row * wordsPerRow) << 6) + Long.numberOfTrailingZeros(word);
+    }
+
+    /**
+     * @return # of edge pixels
+     */
+    public int cardinality() {
+        int count = 0;
+        for (long word : words)
+            count += Long.bitCount(word);
+        return count;
+    }
+
+    /**
+     * @return # of edge pixels in row
+     */
+    public int cardinality(int row) {
+        int count = 0;
+        for (int index = row * wordsPerRow; index < (row + 1) * wordsPerRow; index++)
+            count += Long.bitCount(words[index]);
+        return count;
+    }
+
+    /**
+     * Keeps the pixels that are edges in both masks.
+     * @return this mask
+     */
+    public EdgeMask and(EdgeMask other) {
+        checkSize(other);
+        for (int i = 0; i < words.length; i++)
+            words[i] &= other.words[i];
+        return this;
+    }
+
+    /**
+     * Adds the edge pixels of other.
+     * @return this mask
+     */
+    public EdgeMask or(EdgeMask other) {
+        checkSize(other);
+        for (int i = 0; i < words.length; i++)
+            words[i] |= other.words[i];
+        return this;
+    }
+
+    /**
+     * Keeps the pixels that are edges in exactly one of the masks.
+     * @return this mask
+     */
+    public EdgeMask xor(EdgeMask other) {
+        checkSize(other);
+        for (int i = 0; i < words.length; i++)
+            words[i] ^= other.words[i];
+        return this;
+    }
+
+    /**
+     * Removes the edge pixels of other, e.g. outside a region of interest.
+     * @return this mask
+     */
+    public EdgeMask andNot(EdgeMask other) {
+        checkSize(other);
+        for (int i = 0; i < words.length; i++)
+            words[i] &= ~other.words[i];
+        return this;
+    }
+
+    /**
+     * Inverts every pixel.
+     * @return this mask
+     */
+    public EdgeMask not() {
+        // the last word of a row only holds columns % 64 pixels
+        long last = (columns & 63) == 0 ? -1L : (1L << columns) - 1;
+        for (int i = 0; i < rows; i++) {
+            int index = i * wordsPerRow;
+            for (int w = 0; w < wordsPerRow - 1; w++)
+                words[index + w] = ~words[index + w];
+            words[index + wordsPerRow - 1] = ~words[index + wordsPerRow - 1] & last;
+        }
+        return this;
+    }
+
+    /**
+     * @return a new mask with the same pixels
+     */
+    public EdgeMask copy() {
+        EdgeMask copy = new EdgeMask(rows, columns);
+        System.arraycopy(words, 0, copy.words, 0, words.length);
+        return copy;
+    }
+
+    private void checkPixel(int row, int col) {
+        if (row < 0 || col < 0 || row >= rows || col >= columns)
+            throw new IndexOutOfBoundsException("Pixel (" + row + ", " + col + ") is outside of the mask");
+    }
+
+    private void checkSize(EdgeMask other) {
+        if (other.rows != rows || other.columns != columns)
+            throw new IllegalArgumentException("Masks must have the same size");
+    }
+
+    /**
+     * @return # of rows
+     */
+    public int getRows() {
+        return rows;
+    }
+
+    /**
+     * @return # of columns
+     */
+    public int getColumns() {
+        return columns;
+    }
+
+    /**
+     * @return # of longs per row in the backing array
+     */
+    public int getWordsPerRow() {
+        return wordsPerRow;
+    }
+
+    /**
+     * @return the backing array
+     */
+    public long[] getWords() {
+        return words;
+    }
+}
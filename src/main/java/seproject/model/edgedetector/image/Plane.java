@@ -0,0 +1,93 @@
+package seproject.model.edgedetector.image;
+
+/**
+ * Geometry shared by the primitive image planes.
+ * <P> A plane is a window of rows x columns samples stored row-major in a flat
+ * array: sample (row, col) lives at {@code offset + row * stride + col}. Sub-views
+ * share the backing array of their parent, so they never copy pixels.
+ */
+public abstract class Plane {
+
+    protected final int rows;       // # of rows in the plane
+    protected final int columns;    // # of columns in the plane
+    protected final int offset;     // index of sample (0, 0) in the backing array
+    protected final int stride;     // distance between two vertically adjacent samples
+
+    protected Plane(int rows, int columns, int offset, int stride, int capacity) {
+        if (rows <= 0 || columns <= 0)
+            throw new IllegalArgumentException("Plane must have at least one row and one column");
+        if (offset < 0 || stride < columns)
+            throw new IllegalArgumentException("Invalid offset or stride");
+        if ((long) offset + (long) (rows - 1) * stride + columns > capacity)
+            throw new IllegalArgumentException("Backing array is too small for the plane");
+        this.rows = rows;
+        this.columns = columns;
+        this.offset = offset;
+        this.stride = stride;
+    }
+
+    /**
+     * @return # of samples of a new rows x columns plane
+     * @throws IllegalArgumentException if the plane is empty or would not fit into an array
+     */
+    protected static int size(int rows, int columns) {
+        if (rows <= 0 || columns <= 0)
+            throw new IllegalArgumentException("Plane must have at least one row and one column");
+        try {
+            return Math.multiplyExact(rows, columns);
+        } catch (ArithmeticException e) {
+            throw new IllegalArgumentException("Plane of " + rows + " x " + columns + " samples is too large", e);
+        }
+    }
+
+    /**
+     * @return index of sample (row, col) in the backing array
+     */
+    public int index(int row, int col) {
+        return offset + row * stride + col;
+    }
+
+    /**
+     * @return true if the rows follow each other without gaps in the backing array
+     */
+    public boolean isContiguous() {
+        return stride == columns;
+    }
+
+    /**
+     * Checks that the given region lies inside this plane.
+     */
+    protected void checkRegion(int row, int col, int rows, int columns) {
+        if (row < 0 || col < 0 || rows <= 0 || columns <= 0
+                || row + rows > this.rows || col + columns > this.columns)
+            throw new IllegalArgumentException("Region is outside of the plane");
+    }
+
+    /**
+     * @return # of rows
+     */
+    public int getRows() {
+        return rows;
+    }
+
+    /**
+     * @return # of columns
+     */
+    public int getColumns() {
+        return columns;
+    }
+
+    /**
+     * @return index of sample (0, 0) in the backing array
+     */
+    public int getOffset() {
+        return offset;
+    }
+
+    /**
+     * @return distance between two vertically adjacent samples in the backing array
+     */
+    public int getStride() {
+        return stride;
+    }
+}
@@ -0,0 +1,81 @@
+package seproject.model.edgedetector.image;
+
+/**
+ * Plane of signed 16-bit samples, used for gradient magnitudes and other
+ * values that do not fit into 8 bits.
+ */
+public class ShortPlane extends Plane {
+
+    private final short[] data;
+
+    public ShortPlane(int rows, int columns) {
+        this(new short[size(rows, columns)], rows, columns, 0, columns);
+    }
+
+    public ShortPlane(short[] data, int rows, int columns, int offset, int stride) {
+        super(rows, columns, offset, stride, data.length);
+        this.data = data;
+    }
+
+    /**
+     * Copies a 2D array into a new plane, clamping each value to the short range.
+     */
+    public static ShortPlane fromArray(int[][] values) {
+        ShortPlane plane = new ShortPlane(values.length, values[0].length);
+        for (int i = 0; i < plane.rows; i++) {
+            int index = plane.index(i, 0);
+            for (int j = 0; j < plane.columns; j++) {
+                int value = values[i][j];
+                plane.data[index + j] = (short) ((value > Short.MAX_VALUE) ? Short.MAX_VALUE
+                        : (value < Short.MIN_VALUE) ? Short.MIN_VALUE : value);
+            }
+        }
+        return plane;
+    }
+
+    /**
+     * @return the samples as a new 2D array indexed [row][column]
+     */
+    public int[][] toArray() {
+        int[][] values = new int[rows][columns];
+        for (int i = 0; i < rows; i++) {
+            int index = index(i, 0);
+            for (int j = 0; j < columns; j++)
+                values[i][j] = data[index + j];
+        }
+        return values;
+    }
+
+    public int get(int row, int col) {
+        return data[index(row, col)];
+    }
+
+    public void set(int row, int col, int value) {
+        data[index(row, col)] = (short) value;
+    }
+
+    /**
+     * @return a view of the given region that shares this plane's samples
+     */
+    public ShortPlane subPlane(int row, int col, int rows, int columns) {
+        checkRegion(row, col, rows, columns);
+        return new ShortPlane(data, rows, columns, index(row, col), stride);
+    }
+
+    /**
+     * @return a new contiguous plane with the same samples
+     */
+    public ShortPlane copy() {
+        ShortPlane copy = new ShortPlane(rows, columns);
+        for (int i = 0; i < rows; i++)
+            System.arraycopy(data, index(i, 0), copy.data, i * columns, columns);
+        return copy;
+    }
+
+    /**
+     * @return the backing array
+     */
+    public short[] getData() {
+        return data;
+    }
+}
@@ -2,13 +2,23 @@ package seproject.model.edgedetector.imagederivatives;
 
 public class ConvolutionKernel {
 
-    // Default 5x5 Gaussian kernel with sigma = 1.4
+    // Relative error allowed between a kernel and the outer product of its factors
+    private static final double SEPARABLE_TOLERANCE = 1e-9;
+
+    // Default 5x5 Gaussian kernel, the usual integer approximation of sigma = 1.4
     public static final double[][] GAUSSIAN_KERNEL = {{2/159.0, 4/159.0 , 5/159.0 , 4/159.0 , 2/159.0},
             {4/159.0, 9/159.0 , 12/159.0, 9/159.0 , 4/159.0},
             {5/159.0, 12/159.0, 15/159.0, 12/159.0, 5/159.0},
             {4/159.0, 9/159.0 , 12/159.0, 9/159.0 , 4/159.0},
             {2/159.0, 4/159.0 , 5/159.0 , 4/159.0 , 2/159.0}};
 
+    // Sigma whose 5x5 Gaussian is closest to GAUSSIAN_KERNEL in the least squares sense;
+    // every entry of its outer product rounds to the same multiple of 1/159
+    public static final double GAUSSIAN_SIGMA = 1.3635;
+
+    // 1D Gaussian kernel with GAUSSIAN_SIGMA, the separable approximation of GAUSSIAN_KERNEL
+    public static final double[] GAUSSIAN_VECTOR = generateGaussianVector(5, GAUSSIAN_SIGMA);
+
     // Larger Gaussian Kernel for better noise reduction
     public static final double[][] GAUSSIAN_KERNEL_LARGE = {
             {1/256.0, 4/256.0, 6/256.0, 4/256.0, 1/256.0},
@@ -75,4 +85,68 @@ public class ConvolutionKernel {
 
         return kernel;
     }
+
+    /**
+     * Generates a normalized 1D Gaussian kernel with user-defined size and sigma.
+     * The outer product of this vector with itself is generateGaussianKernel(size, sigma).
+     *
+     * @param size the size of the kernel (odd number, e.g. 3, 5, 7)
+     * @param sigma the standard deviation of the Gaussian distribution
+     * @return a 1D Gaussian kernel
+     */
+    public static double[] generateGaussianVector(int size, double sigma) {
+        double[] kernel = new double[size];
+        int halfSize = size / 2;
+        double sum = 0.0;
+
+        for (int i = -halfSize; i <= halfSize; i++) {
+            kernel[i + halfSize] = Math.exp(-(i * i) / (2 * sigma * sigma));
+            sum += kernel[i + halfSize];
+        }
+
+        for (int i = 0; i < size; i++)
+            kernel[i] /= sum;
+
+        return kernel;
+    }
+
+    /**
+     * Splits a 2D kernel into a column vector and a row vector whose outer
+     * product is the kernel, i.e. kernel[k][l] = column[k] * row[l].
+     *
+     * @param kernel the 2D kernel
+     * @return {column, row}, or null if the kernel is not separable
+     */
+    public static double[][] separate(double[][] kernel) {
+        int m = kernel.length;
+        int n = kernel[0].length;
+
+        // Pivot on the largest entry to keep the division well conditioned
+        int p = 0, q = 0;
+        for (int k = 0; k < m; k++)
+            for (int l = 0; l < n; l++)
+                if (Math.abs(kernel[k][l]) > Math.abs(kernel[p][q])) {
+                    p = k;
+                    q = l;
+                }
+        double pivot = kernel[p][q];
+        if (pivot == 0)
+            return null;
+
+        double[] column = new double[m];
+        double[] row = new double[n];
+        for (int k = 0; k < m; k++)
+            column[k] = kernel[k][q];
+        for (int l = 0; l < n; l++)
+            row[l] = kernel[p][l] / pivot;
+
+        // The kernel is separable only if it has rank 1
+        double tolerance = SEPARABLE_TOLERANCE * Math.abs(pivot);
+        for (int k = 0; k < m; k++)
+            for (int l = 0; l < n; l++)
+                if (Math.abs(column[k] * row[l] - kernel[k][l]) > tolerance)
+                    return null;
+
+        return new double[][] {column, row};
+    }
 }
@@ -0,0 +1,134 @@
+package seproject.model.edgedetector.imagederivatives;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Iterative radix-2 fast Fourier transform.
+ * <P> An FFT object is a plan for one transform size: the twiddle factors and
+ * the bit-reversal permutation are computed once and shared by every
+ * transform of that size. Plans are immutable and can be used from several
+ * threads at once.
+ */
+public class FFT {
+
+    private static final ConcurrentHashMap<Integer, FFT> PLANS = new ConcurrentHashMap<>();
+
+    private final int size;         // # of complex samples, a power of two
+    private final double[] cos;     // cos(2 * pi * k / size) for k < size / 2
+    private final double[] sin;     // sin(2 * pi * k / size) for k < size / 2
+    private final int[] reversed;   // bit-reversed index of every sample
+
+    private FFT(int size) {
+        this.size = size;
+        this.cos = new double[size / 2];
+        this.sin = new double[size / 2];
+        for (int k = 0; k < size / 2; k++) {
+            double angle = 2 * Math.PI * k / size;
+            cos[k] = Math.cos(angle);
+            sin[k] = Math.sin(angle);
+        }
+
+        this.reversed = new int[size];
+        int bits = Integer.numberOfTrailingZeros(size);
+        for (int i = 0; i < size; i++)
+            reversed[i] = bits == 0 ? 0 : Integer.reverse(i) >>> (32 - bits);
+    }
+
+    /**
+     * @param size transform size, must be a power of two
+     * @return the shared plan for that size
+     */
+    public static FFT plan(int size) {
+        if (size <= 0 || Integer.bitCount(size) != 1)
+            throw new IllegalArgumentException("FFT size must be a power of two");
+        return PLANS.computeIfAbsent(size, FFT::new);
+    }
+
+    /**
+     * @return the smallest power of two that is at least n
+     */
+    public static int nextPowerOfTwo(int n) {
+        return n <= 1 ? 1 : Integer.highestOneBit(n - 1) << 1;
+    }
+
+    /**
+     * In-place forward transform of size complex samples.
+     */
+    public void forward(double[] re, double[] im) {
+        transform(re, im, 1);
+    }
+
+    /**
+     * In-place inverse transform of size complex samples, without the 1/size scaling.
+     */
+    public void inverse(double[] re, double[] im) {
+        transform(re, im, -1);
+    }
+
+    /**
+     * Forward transform of two real signals with a single complex transform.
+     * <P> On entry a and b hold the real signals. On return (a, aIm) holds the
+     * spectrum of a and (b, bIm) the spectrum of b.
+     */
+    public void forwardReal(double[] a, double[] b, double[] aIm, double[] bIm) {
+        forward(a, b);
+
+        // Z = A + iB, so A[k] = (Z[k] + conj(Z[-k])) / 2 and B[k] = (Z[k] - conj(Z[-k])) / 2i
+        for (int k = 0; k <= size / 2; k++) {
+            int nk = (size - k) & (size - 1);
+            double zr = a[k], zi = b[k];
+            double wr = a[nk], wi = b[nk];
+            double ar = (zr + wr) / 2, ai = (zi - wi) / 2;
+            double br = (zi + wi) / 2, bi = (wr - zr) / 2;
+
+            a[k] = ar;
+            aIm[k] = ai;
+            a[nk] = ar;
+            aIm[nk] = -ai;
+            b[k] = br;
+            bIm[k] = bi;
+            b[nk] = br;
+            bIm[nk] = -bi;
+        }
+    }
+
+    private void transform(double[] re, double[] im, int sign) {
+        for (int i = 0; i < size; i++) {
+            int j = reversed[i];
+            if (j > i) {
+                double t = re[i];
+                re[i] = re[j];
+                re[j] = t;
+                t = im[i];
+                im[i] = im[j];
+                im[j] = t;
+            }
+        }
+
+        for (int length = 2; length <= size; length <<= 1) {
+            int half = length >> 1;
+            int step = size / length;
+            for (int start = 0; start < size; start += length) {
+                for (int k = 0; k < half; k++) {
+                    double wr = cos[k * step];
+                    double wi = -sign * sin[k * step];
+                    int even = start + k;
+                    int odd = even + half;
+                    double tr = wr * re[odd] - wi * im[odd];
+                    double ti = wr * im[odd] + wi * re[odd];
+                    re[odd] = re[even] - tr;
+                    im[odd] = im[even] - ti;
+                    re[even] += tr;
+                    im[even] += ti;
+                }
+            }
+        }
+    }
+
+    /**
+     * @return # of complex samples per transform
+     */
+    public int getSize() {
+        return size;
+    }
+}
@@ -0,0 +1,247 @@
+package seproject.model.edgedetector.imagederivatives;
+
+import java.util.Arrays;
+
+import seproject.model.edgedetector.image.BytePlane;
+import seproject.model.edgedetector.image.Plane;
+import seproject.model.edgedetector.image.ShortPlane;
+import seproject.model.edgedetector.util.Parallel;
+
+/**
+ * Convolution through the frequency domain, for kernels too large for the
+ * direct loops.
+ * <P> The image is processed in T x T tiles (overlap-save): every tile is
+ * transformed, multiplied with the conjugate spectrum of the kernel and
+ * transformed back, which yields (T - m + 1) x (T - n + 1) valid outputs per
+ * tile without any wrap-around. Memory is O(T^2) per worker regardless of
+ * the image size, and tiles run in parallel.
+ * <P> Results can differ from the direct loops by one grey level where the
+ * exact value lies within rounding error of an integer.
+ */
+public class FFTConvolution {
+
+    // Smallest tile edge; larger kernels get larger tiles
+    private static final int MIN_TILE = 64;
+
+    // Added before truncating, so integer results that come back as 2.9999999999 stay 3
+    private static final double ROUNDING = 1e-9;
+
+    private final double[][] kernel;
+    private final int m;                    // # of rows in kernel
+    private final int n;                    // # of columns in kernel
+    private final int tile;                 // tile edge, a power of two
+    private final FFT fft;
+    private final double[][] kernelRe;      // spectrum of the zero padded kernel
+    private final double[][] kernelIm;
+
+    public FFTConvolution(double[][] kernel) {
+        this.kernel = kernel;
+        this.m = kernel.length;
+        this.n = kernel[0].length;
+        this.tile = Math.max(MIN_TILE, FFT.nextPowerOfTwo(4 * Math.max(m, n)));
+        this.fft = FFT.plan(tile);
+
+        // The kernel spectrum is shared by every tile
+        this.kernelRe = new double[tile][tile];
+        this.kernelIm = new double[tile][tile];
+        for (int k = 0; k < m; k++)
+            System.arraycopy(kernel[k], 0, kernelRe[k], 0, n);
+        forward2D(kernelRe, kernelIm, new double[tile], new double[tile]);
+    }
+
+    /**
+     * Writes the valid convolution of image into out, clamped to [0, 255].
+     *
+     * @param image the input image
+     * @param out plane of (M - m + 1) x (N - n + 1) samples
+     * @param parallel runs the rows of tiles
+     */
+    public void convolve(BytePlane image, BytePlane out, Parallel parallel) {
+        convolve(image, out, null, 0, 0, parallel);
+    }
+
+    /**
+     * Writes the convolution of image into out, clamped to [0, 255]. Output
+     * pixel (i, j) lines the kernel entry (anchorRow, anchorColumn) up with
+     * input pixel (i, j); samples outside the image are taken from padding.
+     *
+     * @param image the input image
+     * @param out the output plane
+     * @param padding border handling, or null if every sample lies inside the image
+     * @param anchorRow kernel row that lies on the output pixel
+     * @param anchorColumn kernel column that lies on the output pixel
+     * @param parallel runs the rows of tiles
+     */
+    public void convolve(BytePlane image, BytePlane out, Padding padding, int anchorRow, int anchorColumn, Parallel parallel) {
+        convolve(image, out, out.getData(), null, padding, anchorRow, anchorColumn, parallel);
+    }
+
+    /**
+     * Like convolve(BytePlane, BytePlane, ...), but keeps negative results:
+     * out is rounded towards zero and saturates at the short range.
+     */
+    public void convolve(BytePlane image, ShortPlane out, Padding padding, int anchorRow, int anchorColumn, Parallel parallel) {
+        convolve(image, out, null, out.getData(), padding, anchorRow, anchorColumn, parallel);
+    }
+
+    // Exactly one of bytes and shorts is the sample array of out
+    private void convolve(BytePlane image, Plane out, byte[] bytes, short[] shorts,
+                          Padding padding, int anchorRow, int anchorColumn, Parallel parallel) {
+        int stepRows = tile - m + 1;
+        int stepColumns = tile - n + 1;
+        int tileRows = (out.getRows() + stepRows - 1) / stepRows;
+
+        parallel.forEachBand(tileRows, 1, (from, to) -> {
+            double[][] re = new double[tile][tile];
+            double[][] im = new double[tile][tile];
+            double[] scratchRe = new double[tile];
+            double[] scratchIm = new double[tile];
+
+            for (int t = from; t < to; t++) {
+                int row = t * stepRows;
+                for (int col = 0; col < out.getColumns(); col += stepColumns) {
+                    loadTile(image, row - anchorRow, col - anchorColumn, padding, re);
+                    forward2D(re, im, scratchRe, scratchIm);
+
+                    // correlation: multiply with the conjugate kernel spectrum
+                    for (int u = 0; u < tile; u++) {
+                        double[] ar = re[u], ai = im[u], br = kernelRe[u], bi = kernelIm[u];
+                        for (int v = 0; v < tile; v++) {
+                            double r = ar[v] * br[v] + ai[v] * bi[v];
+                            double i = ai[v] * br[v] - ar[v] * bi[v];
+                            ar[v] = r;
+                            ai[v] = i;
+                        }
+                    }
+
+                    int rows = Math.min(stepRows, out.getRows() - row);
+                    int columns = Math.min(stepColumns, out.getColumns() - col);
+                    inverse2D(re, im, rows, scratchRe, scratchIm);
+                    storeTile(re, out, bytes, shorts, row, col, rows, columns);
+                }
+            }
+        });
+    }
+
+    /**
+     * Copies the tile starting at (row, col) into re. Tiles that lie inside the
+     * image are copied row by row; the others go through padding, and past the
+     * image border without padding the tile is zero filled.
+     */
+    private void loadTile(BytePlane image, int row, int col, Padding padding, double[][] re) {
+        byte[] data = image.getData();
+        int M = image.getRows();
+        int N = image.getColumns();
+        if (padding != null && (row < 0 || col < 0 || row + tile > M || col + tile > N)) {
+            // edge loop: every sample is mapped through the padding
+            for (int u = 0; u < tile; u++) {
+                double[] dst = re[u];
+                int sourceRow = padding.map(row + u, M);
+                for (int v = 0; v < tile; v++) {
+                    int sourceColumn = padding.map(col + v, N);
+                    dst[v] = sourceRow < 0 || sourceColumn < 0 ? 0 : data[image.index(sourceRow, sourceColumn)] & 0xFF;
+                }
+            }
+            return;
+        }
+
+        int rows = Math.min(tile, M - row);
+        int columns = Math.min(tile, N - col);
+        for (int u = 0; u < tile; u++) {
+            double[] dst = re[u];
+            if (u >= rows) {
+                Arrays.fill(dst, 0);
+                continue;
+            }
+            int index = image.index(row + u, col);
+            for (int v = 0; v < columns; v++)
+                dst[v] = data[index + v] & 0xFF;
+            Arrays.fill(dst, columns, tile, 0);
+        }
+    }
+
+    private void storeTile(double[][] re, Plane out, byte[] bytes, short[] shorts, int row, int col, int rows, int columns) {
+        double scale = 1.0 / ((double) tile * tile);
+        for (int u = 0; u < rows; u++) {
+            int index = out.index(row + u, col);
+            for (int v = 0; v < columns; v++) {
+                double value = re[u][v] * scale;
+                if (bytes != null) {
+                    value += ROUNDING;
+                    bytes[index + v] = (byte) ((value > 255) ? 255 : (value < 0) ? 0 : (int) value);
+                } else {
+                    // towards zero, so the rounding guard follows the sign
+                    value += value < 0 ? -ROUNDING : ROUNDING;
+                    shorts[index + v] = (short) Math.min(Math.max((int) value, Short.MIN_VALUE), Short.MAX_VALUE);
+                }
+            }
+        }
+    }
+
+    /**
+     * 2D forward transform of the real tile in re; the spectrum ends up in (re, im).
+     */
+    private void forward2D(double[][] re, double[][] im, double[] columnRe, double[] columnIm) {
+        // rows: two real rows per complex transform
+        for (int u = 0; u < tile; u += 2)
+            fft.forwardReal(re[u], re[u + 1], im[u], im[u + 1]);
+
+        // columns
+        for (int v = 0; v < tile; v++) {
+            for (int u = 0; u < tile; u++) {
+                columnRe[u] = re[u][v];
+                columnIm[u] = im[u][v];
+            }
+            fft.forward(columnRe, columnIm);
+            for (int u = 0; u < tile; u++) {
+                re[u][v] = columnRe[u];
+                im[u][v] = columnIm[u];
+            }
+        }
+    }
+
+    /**
+     * 2D inverse transform of (re, im) without scaling; the first rows rows of
+     * the real result end up in re.
+     */
+    private void inverse2D(double[][] re, double[][] im, int rows, double[] columnRe, double[] columnIm) {
+        // columns
+        for (int v = 0; v < tile; v++) {
+            for (int u = 0; u < tile; u++) {
+                columnRe[u] = re[u][v];
+                columnIm[u] = im[u][v];
+            }
+            fft.inverse(columnRe, columnIm);
+            for (int u = 0; u < tile; u++) {
+                re[u][v] = columnRe[u];
+                im[u][v] = columnIm[u];
+            }
+        }
+
+        // rows: the result is real, so rows u and u + 1 share one transform of X_u + i X_u+1
+        for (int u = 0; u < rows; u += 2) {
+            double[] ar = re[u], ai = im[u], br = re[u + 1], bi = im[u + 1];
+            for (int v = 0; v < tile; v++) {
+                columnRe[v] = ar[v] - bi[v];
+                columnIm[v] = ai[v] + br[v];
+            }
+            fft.inverse(columnRe, columnIm);
+            System.arraycopy(columnRe, 0, ar, 0, tile);
+            System.arraycopy(columnIm, 0, br, 0, tile);
+        }
+    }
+
+    /**
+     * @return tile edge used by this convolution
+     */
+    public int getTileSize() {
+        return tile;
+    }
+
+    /**
+     * @return convolution kernel
+     */
+    public double[][] getKernel() {
+        return kernel;
+    }
+}
@@ -0,0 +1,86 @@
+package seproject.model.edgedetector.imagederivatives;
+
+/**
+ * First derivative operators: a pair of small integer kernels for the
+ * gradient in x and y direction. The y kernels point up, i.e. positive
+ * weights are on the top row.
+ */
+public enum GradientOperator {
+    SOBEL(new int[][] {{-1, 0, 1},
+                       {-2, 0, 2},
+                       {-1, 0, 1}},
+          new int[][] {{1, 2, 1},
+                       {0, 0, 0},
+                       {-1, -2, -1}}),
+
+    PREWITT(new int[][] {{-1, 0, 1},
+                         {-1, 0, 1},
+                         {-1, 0, 1}},
+            new int[][] {{1, 1, 1},
+                         {0, 0, 0},
+                         {-1, -1, -1}}),
+
+    ROBERTS(new int[][] {{1, 0},
+                         {0, -1}},
+            new int[][] {{0, -1},
+                         {1, 0}}),
+
+    SCHARR(new int[][] {{-3, 0, 3},
+                        {-10, 0, 10},
+                        {-3, 0, 3}},
+           new int[][] {{3, 10, 3},
+                        {0, 0, 0},
+                        {-3, -10, -3}});
+
+    private final int[][] xKernel;
+    private final int[][] yKernel;
+
+    GradientOperator(int[][] xKernel, int[][] yKernel) {
+        this.xKernel = xKernel;
+        this.yKernel = yKernel;
+    }
+
+    /**
+     * @return kernel for the gradient in x direction
+     */
+    public double[][] getXKernel() {
+        return toDouble(xKernel);
+    }
+
+    /**
+     * @return kernel for the gradient in y direction
+     */
+    public double[][] getYKernel() {
+        return toDouble(yKernel);
+    }
+
+    /**
+     * @return # of rows in both kernels
+     */
+    public int getRows() {
+        return xKernel.length;
+    }
+
+    /**
+     * @return # of columns in both kernels
+     */
+    public int getColumns() {
+        return xKernel[0].length;
+    }
+
+    int xWeight(int row, int col) {
+        return xKernel[row][col];
+    }
+
+    int yWeight(int row, int col) {
+        return yKernel[row][col];
+    }
+
+    private static double[][] toDouble(int[][] kernel) {
+        double[][] copy = new double[kernel.length][kernel[0].length];
+        for (int k = 0; k < kernel.length; k++)
+            for (int l = 0; l < kernel[0].length; l++)
+                copy[k][l] = kernel[k][l];
+        return copy;
+    }
+}
@@ -1,35 +1,224 @@
 package seproject.model.edgedetector.imagederivatives;
 
+import java.util.Arrays;
+
+import seproject.model.edgedetector.image.BytePlane;
+import seproject.model.edgedetector.image.ShortPlane;
+import seproject.model.edgedetector.util.Parallel;
+import seproject.model.edgedetector.util.RowKernels;
+
 public class ImageConvolution {
 
+    /**
+     * How the convolution is computed.
+     */
+    public enum Method {
+        AUTO, DIRECT, SEPARABLE, FFT
+    }
+
+    /**
+     * How results are stored. Both round towards zero.
+     * <P> CLAMPED clamps to [0, 255] in a BytePlane, like an image.
+     * SIGNED keeps negative responses in a ShortPlane, saturating at the short
+     * range, for derivative kernels whose sign matters.
+     */
+    public enum Output {
+        CLAMPED, SIGNED
+    }
+
+    /**
+     * Cost of a kernel from which the FFT is faster, in the units the direct
+     * loops scale with: the kernel area m * n for non-separable kernels, and the
+     * number of taps of the two 1D passes, m + n, for separable ones. Measured
+     * with ConvolutionBenchmark (test sources) on a 1024 x 1024 image: the FFT
+     * wins from a 27 x 27 kernel (area 729) on, but never beats the separable
+     * passes up to 255 x 255, so that switch is off by default. Override with
+     * -Dseproject.fft.crossover and -Dseproject.fft.crossoverSeparable after
+     * re-running it on the target machine.
+     */
+    public static final int FFT_CROSSOVER = Integer.getInteger("seproject.fft.crossover", 27 * 27);
+    public static final int FFT_CROSSOVER_SEPARABLE = Integer.getInteger("seproject.fft.crossoverSeparable", Integer.MAX_VALUE);
+
     /***********************************************************************
      * Fields
      **********************************************************************/
-    private int[][] image;          // original image
-    private double[][] kernel;      // Gaussian kernel
-    private int[][] convolvedImage;  // final answer
+    private BytePlane image;            // original image
+    private double[][] kernel;          // Gaussian kernel
+    private BytePlane convolvedImage;   // final answer for Output.CLAMPED
+    private ShortPlane signedImage;     // final answer for Output.SIGNED
+    private double[] columnKernel;      // vertical factor of a separable kernel, or null
+    private double[] rowKernel;         // horizontal factor of a separable kernel, or null
+    private Padding padding;            // border handling, or null for "valid" output
+    private Parallel parallel;          // splits the output rows into bands
+    private RowKernels rowKernels = RowKernels.getDefault();   // scalar or SIMD inner loops
+    private Method method;              // how the convolution was computed
+    private Output output;              // how results are stored
 
     private int M;                  // # of rows in original image
     private int N;                  // # of columns in original image
     private int m;                  // # of rows in kernel
     private int n;                  // # of columns in kernel
+    private int anchorRow;          // kernel row that lies on the output pixel
+    private int anchorColumn;       // kernel column that lies on the output pixel
+    private int outputRows;         // # of rows in the result
+    private int outputColumns;      // # of columns in the result
 
 
     /***********************************************************************
-     * Constructor
+     * Constructors
      **********************************************************************/
+
+    /**
+     * "Valid" convolution: the output only covers the positions where the kernel
+     * fits entirely inside the image, so it is (M - m + 1) x (N - n + 1).
+     */
     public ImageConvolution(int[][] image, double[][] kernel) {
+        this(BytePlane.fromArray(image), kernel);
+    }
+
+    public ImageConvolution(BytePlane image, double[][] kernel) {
+        this(image, kernel, Parallel.getDefault());
+    }
+
+    /**
+     * Convolves on the given Parallel; the result is the same for any parallelism.
+     */
+    public ImageConvolution(BytePlane image, double[][] kernel, Parallel parallel) {
+        this(image, kernel, Method.AUTO, null, parallel);
+    }
+
+    /**
+     * Convolves with the given method. AUTO runs separable kernels as two 1D
+     * passes and switches to the FFT above the measured crossovers.
+     */
+    public ImageConvolution(BytePlane image, double[][] kernel, Method method, Parallel parallel) {
+        this(image, kernel, method, null, parallel);
+    }
+
+    /**
+     * "Same" convolution: the output is M x N, the kernel is centred on each
+     * pixel, and samples outside the image are taken from padding.
+     */
+    public ImageConvolution(BytePlane image, double[][] kernel, Padding padding) {
+        this(image, kernel, Method.AUTO, padding, Output.CLAMPED, Parallel.getDefault());
+    }
+
+    /**
+     * "Same" convolution stored as given by output, e.g. Output.SIGNED for
+     * derivative kernels.
+     */
+    public ImageConvolution(BytePlane image, double[][] kernel, Padding padding, Output output) {
+        this(image, kernel, Method.AUTO, padding, output, Parallel.getDefault());
+    }
+
+    /**
+     * Convolves with the given method and padding into clamped bytes.
+     */
+    public ImageConvolution(BytePlane image, double[][] kernel, Method method, Padding padding, Parallel parallel) {
+        this(image, kernel, method, padding, Output.CLAMPED, parallel);
+    }
+
+    /**
+     * Full constructor.
+     *
+     * @param image the input image
+     * @param kernel the convolution kernel
+     * @param method how to compute the convolution
+     * @param padding border handling for a same-size output, or null for a "valid" output
+     * @param output how results are stored
+     * @param parallel splits the work into row bands
+     */
+    public ImageConvolution(BytePlane image, double[][] kernel, Method method, Padding padding, Output output, Parallel parallel) {
         // set fields
+        setImage(image, kernel, padding, output, parallel);
+
+        if (method == Method.AUTO || method == Method.SEPARABLE) {
+            double[][] factors = ConvolutionKernel.separate(kernel);
+            if (factors != null) {
+                this.columnKernel = factors[0];
+                this.rowKernel = factors[1];
+            } else if (method == Method.SEPARABLE) {
+                throw new IllegalArgumentException("Kernel is not separable");
+            }
+        }
+        if (method == Method.AUTO) {
+            if (rowKernel != null)
+                method = m + n >= FFT_CROSSOVER_SEPARABLE ? Method.FFT : Method.SEPARABLE;
+            else
+                method = m * n >= FFT_CROSSOVER ? Method.FFT : Method.DIRECT;
+        }
+        this.method = method;
+
+        // convolve image with kernel
+        run();
+    }
+
+    /**
+     * Convolves with the separable kernel columnKernel x rowKernel.
+     */
+    public ImageConvolution(BytePlane image, double[] columnKernel, double[] rowKernel) {
+        this(image, columnKernel, rowKernel, null, Output.CLAMPED, Parallel.getDefault());
+    }
+
+    /**
+     * Convolves with the separable kernel columnKernel x rowKernel, same-size with the given padding.
+     */
+    public ImageConvolution(BytePlane image, double[] columnKernel, double[] rowKernel, Padding padding) {
+        this(image, columnKernel, rowKernel, padding, Output.CLAMPED, Parallel.getDefault());
+    }
+
+    /**
+     * Convolves with the separable kernel columnKernel x rowKernel into clamped bytes.
+     */
+    public ImageConvolution(BytePlane image, double[] columnKernel, double[] rowKernel, Padding padding, Parallel parallel) {
+        this(image, columnKernel, rowKernel, padding, Output.CLAMPED, parallel);
+    }
+
+    /**
+     * Convolves with the separable kernel columnKernel x rowKernel on the given Parallel.
+     *
+     * @param padding border handling for a same-size output, or null for a "valid" output
+     * @param output how results are stored
+     */
+    public ImageConvolution(BytePlane image, double[] columnKernel, double[] rowKernel, Padding padding, Output output, Parallel parallel) {
+        double[][] kernel = new double[columnKernel.length][rowKernel.length];
+        for (int k = 0; k < columnKernel.length; k++)
+            for (int l = 0; l < rowKernel.length; l++)
+                kernel[k][l] = columnKernel[k] * rowKernel[l];
+
+        // set fields
+        setImage(image, kernel, padding, output, parallel);
+        this.columnKernel = columnKernel;
+        this.rowKernel = rowKernel;
+        this.method = m + n >= FFT_CROSSOVER_SEPARABLE ? Method.FFT : Method.SEPARABLE;
+
+        // convolve image with kernel
+        run();
+    }
+
+    private void setImage(BytePlane image, double[][] kernel, Padding padding, Output output, Parallel parallel) {
         this.image = image;
         this.kernel = kernel;
-        this.M = image.length;
-        this.N = image[0].length;
+        this.padding = padding;
+        this.output = output;
+        this.parallel = parallel;
+        this.M = image.getRows();
+        this.N = image.getColumns();
         this.m = kernel.length;
         this.n = kernel[0].length;
-        this.convolvedImage = new int[M - m + 1][N - n + 1];
-
-        // convolve image with kernel
-        convolve();
+        if (padding != null) {
+            this.anchorRow = (m - 1) / 2;
+            this.anchorColumn = (n - 1) / 2;
+            this.outputRows = M;
+            this.outputColumns = N;
+        } else {
+            this.outputRows = M - m + 1;
+            this.outputColumns = N - n + 1;
+        }
+        if (output == Output.SIGNED)
+            this.signedImage = new ShortPlane(outputRows, outputColumns);
+        else
+            this.convolvedImage = new BytePlane(outputRows, outputColumns);
     }
 
 
@@ -37,24 +226,151 @@ public class ImageConvolution {
      * Convolution
      **********************************************************************/
 
+    private void run() {
+        switch (method) {
+            case SEPARABLE:
+                convolveSeparable();
+                break;
+            case FFT:
+                FFTConvolution fft = new FFTConvolution(kernel);
+                if (output == Output.SIGNED)
+                    fft.convolve(image, signedImage, padding, anchorRow, anchorColumn, parallel);
+                else
+                    fft.convolve(image, convolvedImage, padding, anchorRow, anchorColumn, parallel);
+                break;
+            default:
+                convolve();
+                break;
+        }
+    }
+
     /**
      * Discretized 2D Fourier Transform.
      * <P> Write each pixel intensity as linear combo of
      * itself and its neighbors.
+     * <P> One output row is accumulated at a time, kernel entry by kernel entry,
+     * so the innermost loop walks two contiguous arrays. Each pixel still sums
+     * its terms in row-major kernel order.
      */
     private void convolve() {
-        double smoothed;
-        for (int i = 0; i < convolvedImage.length; i++) {
-            for (int j = 0; j < convolvedImage[0].length; j++) {
-                smoothed = 0;
-                for (int k = 0; k < m; k++)
-                    for (int l = 0; l < n; l++)
-                        smoothed += kernel[k][l] * image[i + k][j + l];
-
-                // round off if not between 0 and 255, inclusive
-                convolvedImage[i][j] = (smoothed > 255) ? 255 : (smoothed < 0) ? 0 : (int) smoothed;
+        parallel.forEachBand(outputRows, this::convolveRows);
+    }
+
+    /**
+     * Convolves the output rows [from, to).
+     */
+    private void convolveRows(int from, int to) {
+        int columns = outputColumns;
+        double[] row = new double[columns + n - 1];
+        double[] smoothed = new double[columns];
+
+        for (int i = from; i < to; i++) {
+            Arrays.fill(smoothed, 0);
+            for (int k = 0; k < m; k++) {
+                if (!loadRow(i + k - anchorRow, row))
+                    continue;
+                for (int l = 0; l < n; l++)
+                    rowKernels.multiplyAdd(kernel[k][l], row, l, smoothed, columns);
             }
+
+            store(i, smoothed);
+        }
+    }
+
+    /**
+     * Convolution with a separable kernel as a horizontal pass with rowKernel
+     * followed by a vertical pass with columnKernel: O(m + n) per pixel
+     * instead of O(m * n).
+     * <P> Horizontal results are kept unrounded in a ring of m rows, so each
+     * input row is filtered once per band and memory stays O(m * N) per band.
+     */
+    private void convolveSeparable() {
+        parallel.forEachBand(outputRows, this::convolveSeparableRows);
+    }
+
+    /**
+     * Convolves the output rows [from, to) with the separable kernel.
+     */
+    private void convolveSeparableRows(int from, int to) {
+        int columns = outputColumns;
+        double[][] ring = new double[m][columns];
+        double[] row = new double[columns + n - 1];
+        double[] smoothed = new double[columns];
+
+        // ring slots are indexed by the unpadded source row, which may be negative
+        int first = from - anchorRow;
+        for (int r = first; r < first + m - 1; r++)
+            filterRow(r, row, ring[Math.floorMod(r, m)]);
+
+        for (int i = from; i < to; i++) {
+            // horizontal pass for the one input row that enters the window
+            int entering = i - anchorRow + m - 1;
+            filterRow(entering, row, ring[Math.floorMod(entering, m)]);
+
+            // vertical pass over the m buffered rows
+            Arrays.fill(smoothed, 0);
+            for (int k = 0; k < m; k++)
+                rowKernels.multiplyAdd(columnKernel[k], ring[Math.floorMod(i - anchorRow + k, m)], 0, smoothed, columns);
+
+            store(i, smoothed);
+        }
+    }
+
+    /**
+     * Rounds output row i and stores it as given by output.
+     */
+    private void store(int i, double[] values) {
+        if (output == Output.SIGNED) {
+            rowKernels.clampToShorts(values, signedImage.getData(), signedImage.index(i, 0), outputColumns);
+        } else {
+            // round off if not between 0 and 255, inclusive
+            rowKernels.clampToBytes(values, convolvedImage.getData(), convolvedImage.index(i, 0), outputColumns);
+        }
+    }
+
+    /**
+     * Filters source row r with rowKernel into filtered, using row as scratch space.
+     */
+    private void filterRow(int r, double[] row, double[] filtered) {
+        Arrays.fill(filtered, 0);
+        if (!loadRow(r, row))
+            return;
+        for (int l = 0; l < n; l++)
+            rowKernels.multiplyAdd(rowKernel[l], row, l, filtered, filtered.length);
+    }
+
+    /**
+     * Loads source row r, extended by the columns the kernel reaches past the
+     * left and right border, into row (length columns + n - 1).
+     * <P> The image row itself is one bulk copy; only the few border samples
+     * go through the padding, so the convolution loops never branch on borders.
+     *
+     * @return false if the whole row is zero padding
+     */
+    private boolean loadRow(int r, double[] row) {
+        byte[] src = image.getData();
+        if (padding == null) {
+            rowKernels.toDouble(src, image.index(r, 0), row, 0, N);
+            return true;
         }
+
+        int sourceRow = padding.map(r, M);
+        if (sourceRow < 0)
+            return false;
+        int start = image.index(sourceRow, 0);
+        rowKernels.toDouble(src, start, row, anchorColumn, N);
+
+        // edge loop: left and right border samples
+        for (int p = 0; p < anchorColumn; p++)
+            row[p] = paddedSample(src, start, p - anchorColumn);
+        for (int p = anchorColumn + N; p < row.length; p++)
+            row[p] = paddedSample(src, start, p - anchorColumn);
+        return true;
+    }
+
+    private double paddedSample(byte[] src, int rowStart, int column) {
+        int sourceColumn = padding.map(column, N);
+        return sourceColumn < 0 ? 0 : src[rowStart + sourceColumn] & 0xFF;
     }
 
 
@@ -66,6 +382,13 @@ public class ImageConvolution {
      * @return convolvedImage
      */
     public int[][] getConvolvedImage() {
+        return output == Output.SIGNED ? signedImage.toArray() : convolvedImage.toArray();
+    }
+
+    /**
+     * @return convolvedImage as a plane, or null for Output.SIGNED
+     */
+    public BytePlane getConvolvedPlane() {
         return convolvedImage;
     }
 
@@ -73,6 +396,13 @@ public class ImageConvolution {
      * @return original image
      */
     public int[][] getImage() {
+        return image.toArray();
+    }
+
+    /**
+     * @return original image as a plane
+     */
+    public BytePlane getImagePlane() {
         return image;
     }
 
@@ -83,6 +413,41 @@ public class ImageConvolution {
         return kernel;
     }
 
+    /**
+     * @return true if the convolution ran as two 1D passes
+     */
+    public boolean isSeparable() {
+        return method == Method.SEPARABLE;
+    }
+
+    /**
+     * @return how the convolution was computed
+     */
+    public Method getMethod() {
+        return method;
+    }
+
+    /**
+     * @return signed result as a plane, or null for Output.CLAMPED
+     */
+    public ShortPlane getSignedPlane() {
+        return signedImage;
+    }
+
+    /**
+     * @return how results are stored
+     */
+    public Output getOutput() {
+        return output;
+    }
+
+    /**
+     * @return border handling, or null if the output is "valid" only
+     */
+    public Padding getPadding() {
+        return padding;
+    }
+
     /**
      * @return # of rows in original image
      */
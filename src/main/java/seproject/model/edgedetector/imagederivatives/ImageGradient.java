@@ -0,0 +1,309 @@
+package seproject.model.edgedetector.imagederivatives;
+
+import seproject.model.edgedetector.image.BytePlane;
+import seproject.model.edgedetector.image.ShortPlane;
+import seproject.model.edgedetector.util.NonMaximumSuppression.EdgeDirection;
+import seproject.model.edgedetector.util.Parallel;
+import seproject.model.edgedetector.util.RowKernels;
+
+/**
+ * Gradient of an image in a single sweep.
+ * <P> Each neighbourhood is read once and gives G_x and G_y together. They
+ * are gathered one row at a time, and the magnitude and the quantized
+ * direction are written from that row, so no intermediate x / y images are
+ * made. The L2 magnitude of a row goes through RowKernels.hypot, which uses
+ * SIMD lanes when the vector backend is available. G_x and G_y are only kept
+ * when asked for.
+ * <P> G_x and G_y are signed, so the direction sees all four quadrants. For
+ * 8-bit input the largest operator (Scharr) gives |G_x|, |G_y| &lt;= 4080,
+ * so the magnitude always fits into a short.
+ * <P> The output has the size of the image: the kernel is anchored like in
+ * ImageConvolution and samples outside the image are taken from the padding.
+ * Interior pixels use precomputed offsets without any border checks; only
+ * pixels whose neighbourhood crosses the border go through the padding.
+ */
+public class ImageGradient {
+
+    /***********************************************************************
+     * Fields
+     **********************************************************************/
+    private final BytePlane image;
+    private final GradientOperator operator;
+    private final Padding padding;
+    private final boolean L1norm;
+    private final RowKernels rowKernels = RowKernels.getDefault();   // scalar or SIMD inner loops
+
+    private final ShortPlane magnitude;     // |G|, truncated to an integer
+    private final BytePlane direction;      // EdgeDirection ordinal, or null
+    private final ShortPlane x;             // signed G_x, or null
+    private final ShortPlane y;             // signed G_y, or null
+
+    private final int M;                    // # of rows in image
+    private final int N;                    // # of columns in image
+    private final int m;                    // # of rows in kernel
+    private final int n;                    // # of columns in kernel
+    private final int anchorRow;            // kernel row that lies on the output pixel
+    private final int anchorColumn;         // kernel column that lies on the output pixel
+
+    // Non-zero kernel entries: position and weight in both kernels
+    private final int[] tapRow;
+    private final int[] tapColumn;
+    private final int[] xWeight;
+    private final int[] yWeight;
+
+
+    /***********************************************************************
+     * Constructors
+     **********************************************************************/
+
+    private ImageGradient(Builder builder) {
+        this.image = builder.image;
+        this.operator = builder.operator;
+        this.padding = builder.padding;
+        this.L1norm = builder.L1norm;
+
+        this.M = image.getRows();
+        this.N = image.getColumns();
+        this.m = operator.getRows();
+        this.n = operator.getColumns();
+        this.anchorRow = (m - 1) / 2;
+        this.anchorColumn = (n - 1) / 2;
+
+        int taps = 0;
+        for (int k = 0; k < m; k++)
+            for (int l = 0; l < n; l++)
+                if (operator.xWeight(k, l) != 0 || operator.yWeight(k, l) != 0)
+                    taps++;
+        this.tapRow = new int[taps];
+        this.tapColumn = new int[taps];
+        this.xWeight = new int[taps];
+        this.yWeight = new int[taps];
+        int t = 0;
+        for (int k = 0; k < m; k++)
+            for (int l = 0; l < n; l++)
+                if (operator.xWeight(k, l) != 0 || operator.yWeight(k, l) != 0) {
+                    tapRow[t] = k;
+                    tapColumn[t] = l;
+                    xWeight[t] = operator.xWeight(k, l);
+                    yWeight[t] = operator.yWeight(k, l);
+                    t++;
+                }
+
+        this.magnitude = new ShortPlane(M, N);
+        this.direction = builder.direction ? new BytePlane(M, N) : null;
+        this.x = builder.components ? new ShortPlane(M, N) : null;
+        this.y = builder.components ? new ShortPlane(M, N) : null;
+
+        builder.parallel.forEachBand(M, this::sweepRows);
+    }
+
+    public static class Builder {
+        private BytePlane image;
+        private GradientOperator operator;
+        private Padding padding = Padding.SAME;
+        private boolean L1norm = false;
+        private boolean direction = false;
+        private boolean components = false;
+        private Parallel parallel = Parallel.getDefault();
+
+        public Builder(BytePlane image, GradientOperator operator) {
+            this.image = image;
+            this.operator = operator;
+        }
+
+        public Builder padding(Padding padding) {
+            if (padding == null)
+                throw new IllegalArgumentException("Padding must not be null");
+            this.padding = padding;
+            return this;
+        }
+
+        /**
+         * Use |G_x| + |G_y| instead of sqrt(G_x^2 + G_y^2) as magnitude.
+         */
+        public Builder L1norm(boolean L1norm) {
+            this.L1norm = L1norm;
+            return this;
+        }
+
+        /**
+         * Also write the quantized gradient direction.
+         */
+        public Builder direction(boolean direction) {
+            this.direction = direction;
+            return this;
+        }
+
+        /**
+         * Also keep G_x and G_y.
+         */
+        public Builder components(boolean components) {
+            this.components = components;
+            return this;
+        }
+
+        public Builder parallel(Parallel parallel) {
+            this.parallel = parallel;
+            return this;
+        }
+
+        public ImageGradient build() {
+            return new ImageGradient(this);
+        }
+    }
+
+
+    /***********************************************************************
+     * Gradient
+     **********************************************************************/
+
+    /**
+     * Computes the output rows [from, to).
+     */
+    private void sweepRows(int from, int to) {
+        byte[] data = image.getData();
+        int stride = image.getStride();
+        int[] offsets = new int[tapRow.length];
+        for (int t = 0; t < offsets.length; t++)
+            offsets[t] = tapRow[t] * stride + tapColumn[t];
+
+        // G_x and G_y of one output row; integers, so exact as doubles
+        double[] xRow = new double[N];
+        double[] yRow = new double[N];
+        double[] magnitudeRow = L1norm ? null : new double[N];
+
+        // columns whose neighbourhood lies inside the image
+        int first = anchorColumn;
+        int last = Math.max(first, N - (n - 1 - anchorColumn));
+
+        for (int i = from; i < to; i++) {
+            int top = i - anchorRow;
+            if (top < 0 || top + m > M) {
+                for (int j = 0; j < N; j++)
+                    sweepBorder(i, j, xRow, yRow);
+                storeRow(i, xRow, yRow, magnitudeRow);
+                continue;
+            }
+
+            // edge loop: left border
+            for (int j = 0; j < Math.min(first, N); j++)
+                sweepBorder(i, j, xRow, yRow);
+
+            // interior: no border checks
+            int base = image.index(top, 0) - anchorColumn;
+            for (int j = first; j < last; j++) {
+                int G_x = 0;
+                int G_y = 0;
+                for (int t = 0; t < offsets.length; t++) {
+                    int value = data[base + j + offsets[t]] & 0xFF;
+                    G_x += xWeight[t] * value;
+                    G_y += yWeight[t] * value;
+                }
+                xRow[j] = G_x;
+                yRow[j] = G_y;
+            }
+
+            // edge loop: right border
+            for (int j = last; j < N; j++)
+                sweepBorder(i, j, xRow, yRow);
+
+            storeRow(i, xRow, yRow, magnitudeRow);
+        }
+    }
+
+    /**
+     * Computes pixel (i, j) into the row buffers, taking samples outside the
+     * image from the padding.
+     */
+    private void sweepBorder(int i, int j, double[] xRow, double[] yRow) {
+        int G_x = 0;
+        int G_y = 0;
+        for (int t = 0; t < tapRow.length; t++) {
+            int row = padding.map(i - anchorRow + tapRow[t], M);
+            int col = padding.map(j - anchorColumn + tapColumn[t], N);
+            if (row < 0 || col < 0)
+                continue;
+            int value = image.get(row, col);
+            G_x += xWeight[t] * value;
+            G_y += yWeight[t] * value;
+        }
+        xRow[j] = G_x;
+        yRow[j] = G_y;
+    }
+
+    /**
+     * Writes magnitude, direction and components of row i. magnitudeRow is
+     * scratch space for the L2 norm.
+     */
+    private void storeRow(int i, double[] xRow, double[] yRow, double[] magnitudeRow) {
+        short[] mag = magnitude.getData();
+        int index = magnitude.index(i, 0);
+        if (L1norm) {
+            for (int j = 0; j < N; j++)
+                mag[index + j] = (short) (Math.abs(xRow[j]) + Math.abs(yRow[j]));
+        } else {
+            rowKernels.hypot(xRow, yRow, magnitudeRow, N);
+            // truncated like (int) Math.sqrt(G_x * G_x + G_y * G_y)
+            for (int j = 0; j < N; j++)
+                mag[index + j] = (short) magnitudeRow[j];
+        }
+
+        for (int j = 0; j < N; j++) {
+            int G_x = (int) xRow[j];
+            int G_y = (int) yRow[j];
+            if (direction != null)
+                direction.set(i, j, EdgeDirection.getDirection(G_x, G_y).ordinal());
+            if (x != null) {
+                x.set(i, j, G_x);
+                y.set(i, j, G_y);
+            }
+        }
+    }
+
+
+    /***********************************************************************
+     * Accessors
+     **********************************************************************/
+
+    /**
+     * @return gradient magnitude, same size as the image
+     */
+    public ShortPlane getMagnitude() {
+        return magnitude;
+    }
+
+    /**
+     * @return EdgeDirection ordinal of every pixel, or null if not requested
+     */
+    public BytePlane getDirection() {
+        return direction;
+    }
+
+    /**
+     * @return signed gradient in x direction, or null if not requested
+     */
+    public ShortPlane getX() {
+        return x;
+    }
+
+    /**
+     * @return signed gradient in y direction, or null if not requested
+     */
+    public ShortPlane getY() {
+        return y;
+    }
+
+    /**
+     * @return operator the gradient was computed with
+     */
+    public GradientOperator getOperator() {
+        return operator;
+    }
+
+    /**
+     * @return border handling
+     */
+    public Padding getPadding() {
+        return padding;
+    }
+}
@@ -13,5 +13,33 @@ public enum Padding {
         }
         return super.toString();
     }
+
+    /**
+     * Maps a row or column index that may lie outside the image to the index
+     * of the sample it takes its value from.
+     *
+     * @param index row or column index, possibly outside [0, length)
+     * @param length # of samples along that axis
+     * @return index in [0, length), or -1 for a zero sample
+     */
+    public int map(int index, int length) {
+        if (index >= 0 && index < length)
+            return index;
+        switch (this) {
+            case ZEROS:
+                return -1;
+            case SAME:
+                return index < 0 ? 0 : length - 1;
+            case SYMMETRIC:
+                if (length == 1)
+                    return 0;
+                int period = 2 * (length - 1);
+                int folded = Math.floorMod(index, period);
+                return folded < length ? folded : period - folded;
+            case CIRCULAR:
+                return Math.floorMod(index, length);
+        }
+        throw new IllegalStateException("Unknown padding " + this);
+    }
 }
 
@@ -0,0 +1,293 @@
+package seproject.model.edgedetector.io;
+
+import java.awt.image.BufferedImage;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import seproject.model.edgedetector.image.BytePlane;
+import seproject.model.edgedetector.image.EdgeMask;
+import seproject.model.edgedetector.util.Grayscale;
+
+/**
+ * Binary PGM (P5, 8-bit grayscale) and PBM (P4, bilevel) files.
+ * <P> Samples are stored raw, so reading and writing is a copy between the
+ * file and the plane or mask; only PGM files with a maxval below 255 are
+ * rescaled on reading. Files of at least MAP_THRESHOLD bytes are
+ * memory-mapped for reading; smaller ones are read straight into the target
+ * array. In PBM a set bit is black, so edge pixels come out black on white.
+ */
+public class Netpbm {
+
+    // Files from this size on are mapped instead of read
+    public static final long MAP_THRESHOLD = 1 << 20;
+
+    // Size of the staging buffer for packed PBM rows
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    /**
+     * @return true if format names PGM or PBM, which OutputSink writes with this class
+     */
+    public static boolean isFormat(String format) {
+        return format.equalsIgnoreCase("pgm") || format.equalsIgnoreCase("pbm");
+    }
+
+    /**
+     * @return true if the file at path starts with the magic number of a binary PGM file
+     */
+    public static boolean isPGM(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer magic = ByteBuffer.allocate(2);
+            while (magic.hasRemaining() && channel.read(magic) >= 0)
+                ;
+            return magic.position() == 2 && magic.get(0) == 'P' && magic.get(1) == '5';
+        }
+    }
+
+    /**
+     * Writes image as "pgm", its grayscale intensities, or "pbm", with
+     * pixels darker than mid-gray set. Result images of the detectors
+     * come out unchanged either way.
+     */
+    public static void write(BufferedImage image, String format, WritableByteChannel channel) throws IOException {
+        BytePlane plane = Grayscale.imgToGrayPlane(image);
+        if (format.equalsIgnoreCase("pgm")) {
+            writePGM(plane, channel);
+        } else if (format.equalsIgnoreCase("pbm")) {
+            EdgeMask mask = new EdgeMask(plane.getRows(), plane.getColumns());
+            for (int i = 0; i < plane.getRows(); i++)
+                for (int j = 0; j < plane.getColumns(); j++)
+                    if (plane.get(i, j) < 128)
+                        mask.set(i, j, true);
+            writePBM(mask, channel);
+        } else {
+            throw new IOException("Not a Netpbm format: " + format);
+        }
+    }
+
+    /**
+     * Reads a binary PGM file with a maxval of at most 255. Samples of a
+     * smaller maxval are rescaled to 0..255.
+     */
+    public static BytePlane readPGM(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer input = open(channel);
+            Header header = Header.parse(input, "P5");
+            if (header.maxValue < 1 || header.maxValue > 255)
+                throw new IOException("Only 8-bit PGM files are supported");
+
+            int length;
+            try {
+                length = Math.multiplyExact(header.rows, header.columns);
+            } catch (ArithmeticException e) {
+                throw new IOException("PGM image is too large", e);
+            }
+            // check before allocating, the header may claim any size
+            if (input.remaining() < length)
+                throw new EOFException("PGM file is truncated");
+            BytePlane plane = new BytePlane(header.rows, header.columns);
+            byte[] data = plane.getData();
+            input.get(data, 0, length);
+
+            if (header.maxValue != 255) {
+                int maxValue = header.maxValue;
+                byte[] scale = new byte[256];
+                for (int v = 0; v < 256; v++)
+                    scale[v] = (byte) Math.min(255, (v * 255 + maxValue / 2) / maxValue);
+                for (int i = 0; i < length; i++)
+                    data[i] = scale[data[i] & 0xFF];
+            }
+            return plane;
+        }
+    }
+
+    /**
+     * Reads a binary PBM file; black pixels become edge pixels.
+     */
+    public static EdgeMask readPBM(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer input = open(channel).order(ByteOrder.BIG_ENDIAN);
+            Header header = Header.parse(input, "P4");
+
+            int rowBytes = (header.columns + 7) >>> 3;
+            // check before allocating, the header may claim any size
+            if (input.remaining() < (long) rowBytes * header.rows)
+                throw new EOFException("PBM file is truncated");
+            EdgeMask mask = new EdgeMask(header.rows, header.columns);
+            long[] words = mask.getWords();
+            int wordsPerRow = mask.getWordsPerRow();
+
+            for (int i = 0; i < header.rows; i++) {
+                int end = input.position() + rowBytes;
+                for (int w = 0; w < wordsPerRow; w++) {
+                    long word;
+                    if (end - input.position() >= 8) {
+                        word = input.getLong();
+                    } else {
+                        // last bytes of the row, left aligned like a full word
+                        word = 0;
+                        for (int shift = 56; input.position() < end; shift -= 8)
+                            word |= (long) (input.get() & 0xFF) << shift;
+                    }
+                    // PBM packs the first pixel into the highest bit, the mask into the lowest
+                    words[i * wordsPerRow + w] = Long.reverse(word);
+                }
+                // drop the padding bits past the last column
+                if ((header.columns & 63) != 0)
+                    words[(i + 1) * wordsPerRow - 1] &= (1L << header.columns) - 1;
+            }
+            return mask;
+        }
+    }
+
+    /**
+     * Writes plane as a binary PGM file, replacing the file at path.
+     */
+    public static void writePGM(BytePlane plane, Path path) throws IOException {
+        try (FileChannel channel = create(path)) {
+            writePGM(plane, channel);
+        }
+    }
+
+    /**
+     * Writes plane as a binary PGM image to channel, which stays open.
+     */
+    public static void writePGM(BytePlane plane, WritableByteChannel channel) throws IOException {
+        writeFully(channel, header("P5", plane.getRows(), plane.getColumns(), "255"));
+        if (plane.isContiguous()) {
+            writeFully(channel, ByteBuffer.wrap(plane.getData(), plane.index(0, 0), plane.getRows() * plane.getColumns()));
+        } else {
+            for (int i = 0; i < plane.getRows(); i++)
+                writeFully(channel, ByteBuffer.wrap(plane.getData(), plane.index(i, 0), plane.getColumns()));
+        }
+    }
+
+    /**
+     * Writes mask as a binary PBM file, replacing the file at path.
+     */
+    public static void writePBM(EdgeMask mask, Path path) throws IOException {
+        try (FileChannel channel = create(path)) {
+            writePBM(mask, channel);
+        }
+    }
+
+    /**
+     * Writes mask as a binary PBM image to channel, which stays open.
+     */
+    public static void writePBM(EdgeMask mask, WritableByteChannel channel) throws IOException {
+        int rows = mask.getRows();
+        int columns = mask.getColumns();
+        long[] words = mask.getWords();
+        int wordsPerRow = mask.getWordsPerRow();
+        int rowBytes = (columns + 7) >>> 3;
+
+        writeFully(channel, header("P4", rows, columns, null));
+        ByteBuffer output = ByteBuffer.allocateDirect(Math.max(BUFFER_SIZE, wordsPerRow * 8)).order(ByteOrder.BIG_ENDIAN);
+        for (int i = 0; i < rows; i++) {
+            if (output.remaining() < wordsPerRow * 8) {
+                output.flip();
+                writeFully(channel, output);
+                output.clear();
+            }
+            int start = output.position();
+            for (int w = 0; w < wordsPerRow; w++)
+                output.putLong(Long.reverse(words[i * wordsPerRow + w]));
+            // keep only the bytes the row needs
+            output.position(start + rowBytes);
+        }
+        output.flip();
+        writeFully(channel, output);
+    }
+
+    // Maps large files, reads small ones into a heap buffer
+    private static ByteBuffer open(FileChannel channel) throws IOException {
+        long size = channel.size();
+        if (size >= MAP_THRESHOLD)
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        if (size > Integer.MAX_VALUE)
+            throw new IOException("File is too large");
+        ByteBuffer buffer = ByteBuffer.allocate((int) size);
+        while (buffer.hasRemaining())
+            if (channel.read(buffer) < 0)
+                throw new EOFException();
+        return buffer.flip();
+    }
+
+    private static FileChannel create(Path path) throws IOException {
+        return FileChannel.open(path, StandardOpenOption.WRITE, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+    }
+
+    private static ByteBuffer header(String magic, int rows, int columns, String maxValue) {
+        String header = magic + "\n" + columns + " " + rows + "\n" + (maxValue == null ? "" : maxValue + "\n");
+        return ByteBuffer.wrap(header.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    private static void writeFully(WritableByteChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining())
+            channel.write(buffer);
+    }
+
+    /**
+     * Magic number, size and maxval of a Netpbm file.
+     */
+    private static class Header {
+        private int columns;
+        private int rows;
+        private int maxValue = 1;
+
+        // Leaves input at the first byte of the raster
+        static Header parse(ByteBuffer input, String magic) throws IOException {
+            if (input.remaining() < 2 || input.get() != magic.charAt(0) || input.get() != magic.charAt(1))
+                throw new IOException("Not a binary " + (magic.equals("P5") ? "PGM" : "PBM") + " file");
+            Header header = new Header();
+            header.columns = readNumber(input);
+            header.rows = readNumber(input);
+            if (magic.equals("P5"))
+                header.maxValue = readNumber(input);
+            if (header.columns < 1 || header.rows < 1)
+                throw new IOException("Invalid image size");
+            // exactly one whitespace byte separates the header from the raster
+            if (!input.hasRemaining())
+                throw new EOFException();
+            input.get();
+            return header;
+        }
+
+        // Skips whitespace and comments, then reads a decimal number
+        private static int readNumber(ByteBuffer input) throws IOException {
+            int c;
+            while (true) {
+                if (!input.hasRemaining())
+                    throw new EOFException("Netpbm header is truncated");
+                c = input.get(input.position());
+                if (c == '#') {
+                    while (input.hasRemaining() && input.get() != '\n')
+                        ;
+                } else if (Character.isWhitespace(c)) {
+                    input.get();
+                } else {
+                    break;
+                }
+            }
+            long value = 0;
+            int digits = 0;
+            while (input.hasRemaining() && (c = input.get(input.position())) >= '0' && c <= '9') {
+                input.get();
+                value = value * 10 + (c - '0');
+                if (value > Integer.MAX_VALUE)
+                    throw new IOException("Number in Netpbm header is too large");
+                digits++;
+            }
+            if (digits == 0)
+                throw new IOException("Invalid Netpbm header");
+            return (int) value;
+        }
+    }
+}
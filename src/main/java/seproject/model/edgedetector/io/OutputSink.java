@@ -0,0 +1,99 @@
+package seproject.model.edgedetector.io;
+
+import java.awt.image.BufferedImage;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import javax.imageio.stream.MemoryCacheImageOutputStream;
+
+/**
+ * Destination of an encoded result image.
+ * <P> The format is an ImageIO format name ("png", "bmp", ...) chosen per
+ * write, or "pgm" / "pbm" for uncompressed hand-offs, see Netpbm. Encoding never goes through ImageIO's disk cache, and every write
+ * has its own target, so concurrent writes do not clobber each other.
+ *
+ * @param <R> what a write returns, e.g. the file written or the encoded bytes
+ */
+@FunctionalInterface
+public interface OutputSink<R> {
+
+    /**
+     * Encodes image in format and writes it to this sink.
+     *
+     * @return where the image went, see the factory of the sink
+     * @throws IOException if no writer supports format, or writing fails
+     */
+    R write(BufferedImage image, String format) throws IOException;
+
+    /**
+     * @return sink writing to out, which stays open; a write returns out
+     */
+    static OutputSink<OutputStream> toStream(OutputStream out) {
+        return (image, format) -> {
+            encode(image, format, out);
+            out.flush();
+            return out;
+        };
+    }
+
+    /**
+     * @return sink replacing the file at path; a write returns path
+     */
+    static OutputSink<Path> toPath(Path path) {
+        return (image, format) -> {
+            try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(path))) {
+                encode(image, format, out);
+            }
+            return path;
+        };
+    }
+
+    /**
+     * @return sink keeping the image in memory; a write returns the encoded bytes
+     */
+    static OutputSink<byte[]> toBytes() {
+        return (image, format) -> {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            encode(image, format, out);
+            return out.toByteArray();
+        };
+    }
+
+    /**
+     * @return sink writing every image to a new uniquely named temporary
+     * file, deleted when the sink is closed
+     */
+    static TempFileSink tempFile() {
+        return new TempFileSink();
+    }
+
+    /**
+     * Encodes image with the first ImageIO writer of format, buffering in
+     * memory. PGM and PBM are written raw by Netpbm.
+     */
+    static void encode(BufferedImage image, String format, OutputStream out) throws IOException {
+        if (Netpbm.isFormat(format)) {
+            Netpbm.write(image, format, Channels.newChannel(out));
+            return;
+        }
+        Iterator<ImageWriter> writers = ImageIO.getImageWritersByFormatName(format);
+        if (!writers.hasNext())
+            throw new IOException("No image writer for format " + format);
+        ImageWriter writer = writers.next();
+        try (ImageOutputStream stream = new MemoryCacheImageOutputStream(out)) {
+            writer.setOutput(stream);
+            writer.write(image);
+        } finally {
+            writer.dispose();
+        }
+    }
+}
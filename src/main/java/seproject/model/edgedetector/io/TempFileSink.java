@@ -0,0 +1,86 @@
+package seproject.model.edgedetector.io;
+
+import java.awt.image.BufferedImage;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Writes every image to its own temporary file, named edges-*.format.
+ * <P> The files are deleted by close(), so open the sink in a
+ * try-with-resources block around the writes whose files are needed. Files
+ * that outlive such a block go to shared(), which is closed by a single
+ * shutdown hook. A single sink may be shared by concurrent writers.
+ */
+public class TempFileSink implements OutputSink<Path>, AutoCloseable {
+
+    private final List<Path> files = new ArrayList<>();
+
+    // Created on first use, together with its shutdown hook
+    private static class Shared {
+        private static final TempFileSink SINK = new TempFileSink();
+
+        static {
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                try {
+                    SINK.close();
+                } catch (IOException e) {
+                    // the JVM is exiting, nothing left to report to
+                }
+            }, "temp-file-cleanup"));
+        }
+    }
+
+    /**
+     * @return sink whose files are deleted when the JVM exits, or earlier by delete()
+     */
+    public static TempFileSink shared() {
+        return Shared.SINK;
+    }
+
+    @Override
+    public Path write(BufferedImage image, String format) throws IOException {
+        Path path = Files.createTempFile("edges-", "." + format);
+        synchronized (files) {
+            files.add(path);
+        }
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(path))) {
+            OutputSink.encode(image, format, out);
+        } catch (IOException e) {
+            delete(path);
+            throw e;
+        }
+        return path;
+    }
+
+    /**
+     * Deletes a file written by this sink before the sink is closed.
+     *
+     * @return false if this sink did not write path, or it is gone already
+     */
+    public boolean delete(Path path) throws IOException {
+        synchronized (files) {
+            if (!files.remove(path))
+                return false;
+        }
+        return Files.deleteIfExists(path);
+    }
+
+    /**
+     * Deletes every file written so far.
+     */
+    @Override
+    public void close() throws IOException {
+        List<Path> written;
+        synchronized (files) {
+            written = new ArrayList<>(files);
+            files.clear();
+        }
+        for (Path path : written)
+            Files.deleteIfExists(path);
+    }
+}
@@ -0,0 +1,139 @@
+package seproject.model.edgedetector.pipeline;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Consumer;
+
+import javax.imageio.ImageIO;
+
+import seproject.model.edgedetector.image.BytePlane;
+import seproject.model.edgedetector.io.Netpbm;
+import seproject.model.edgedetector.util.Grayscale;
+
+/**
+ * Runs stages on one grayscale image and keeps every result.
+ * <P> Asking for a stage computes its missing inputs first; a stage that is
+ * an input of several others, or of several detectors run on the same
+ * pipeline, is computed once. Results stay cached for the lifetime of the
+ * pipeline, so re-running a detector with new parameters only computes the
+ * stages those parameters reach.
+ * <P> Stages are computed outside the pipeline's lock, so other threads can
+ * read cached results meanwhile; a thread asking for a stage another thread
+ * is computing waits for that result.
+ * <P> A pipeline stops with a CancellationException once its thread is
+ * interrupted: before the next stage, and inside a running stage at its next
+ * band of rows (see Parallel). A cancelled or failed stage is not cached.
+ */
+public class Pipeline {
+
+    private final BytePlane image;
+    private final Map<Stage<?>, CompletableFuture<Object>> results = new HashMap<>();
+    private final Consumer<Stage<?>> listener;
+
+    public Pipeline(BytePlane image) {
+        this(image, stage -> { });
+    }
+
+    /**
+     * @param listener called after each stage is computed, in the computing thread
+     */
+    public Pipeline(BytePlane image, Consumer<Stage<?>> listener) {
+        this.image = image;
+        this.listener = listener;
+    }
+
+    /**
+     * @return a pipeline on the grayscale intensities of image
+     */
+    public static Pipeline of(BufferedImage image) {
+        return new Pipeline(Grayscale.imgToGrayPlane(image));
+    }
+
+    /**
+     * Reads an image file; binary PGM files are read directly into the
+     * grayscale plane, anything else goes through ImageIO.
+     *
+     * @return a pipeline on the grayscale intensities of the file
+     */
+    public static Pipeline read(Path path) throws IOException {
+        if (Netpbm.isPGM(path))
+            return new Pipeline(Netpbm.readPGM(path));
+        BufferedImage image = ImageIO.read(path.toFile());
+        if (image == null)
+            throw new IOException("Unsupported image file " + path);
+        return of(image);
+    }
+
+    /**
+     * @return result of stage, computed now if it is not cached yet
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T get(Stage<T> stage) {
+        CompletableFuture<Object> result;
+        boolean compute;
+        synchronized (this) {
+            result = results.get(stage);
+            compute = result == null;
+            if (compute) {
+                if (Thread.currentThread().isInterrupted())
+                    throw new CancellationException("Pipeline interrupted before " + stage.getName());
+                result = new CompletableFuture<>();
+                results.put(stage, result);
+            }
+        }
+        if (!compute)
+            return (T) await(stage, result);
+
+        // without the lock, since computing asks for the inputs
+        T value;
+        try {
+            value = stage.compute(this);
+        } catch (RuntimeException | Error e) {
+            synchronized (this) {
+                results.remove(stage);
+            }
+            result.completeExceptionally(e);
+            throw e;
+        }
+        result.complete(value);
+        listener.accept(stage);
+        return value;
+    }
+
+    // Waits for a stage another thread is computing
+    private static Object await(Stage<?> stage, CompletableFuture<Object> result) {
+        try {
+            return result.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Pipeline interrupted while waiting for " + stage.getName());
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException)
+                throw (RuntimeException) e.getCause();
+            if (e.getCause() instanceof Error)
+                throw (Error) e.getCause();
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    /**
+     * @return true if the result of stage is cached
+     */
+    public synchronized boolean contains(Stage<?> stage) {
+        CompletableFuture<Object> result = results.get(stage);
+        return result != null && result.isDone() && !result.isCompletedExceptionally();
+    }
+
+    /**
+     * @return the grayscale input image
+     */
+    public BytePlane getImage() {
+        return image;
+    }
+}
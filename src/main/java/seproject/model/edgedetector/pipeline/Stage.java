@@ -0,0 +1,110 @@
+package seproject.model.edgedetector.pipeline;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * Named step of a detection pipeline, producing a T from the results of its
+ * input stages.
+ * <P> A stage is identified by its name, parameters and inputs: two stages
+ * that agree on all three are treated as the same step, and a Pipeline
+ * computes it only once. The name and parameters must therefore describe the
+ * computation completely. Stage results are shared between consumers, so a
+ * stage must never modify the result of one of its inputs.
+ *
+ * @param <T> type of the result
+ */
+public final class Stage<T> {
+
+    private final String name;
+    private final List<Object> params;
+    private final List<Stage<?>> inputs;
+    private final Function<Pipeline, T> compute;
+
+    Stage(String name, List<Object> params, List<Stage<?>> inputs, Function<Pipeline, T> compute) {
+        this.name = name;
+        this.params = params;
+        this.inputs = inputs;
+        this.compute = compute;
+    }
+
+    /**
+     * @param name what the stage computes
+     * @param input stage whose result is passed to function
+     * @param function computes the result from the result of input
+     * @param params every parameter function depends on besides its input
+     */
+    public static <A, T> Stage<T> of(String name, Stage<A> input, Function<? super A, ? extends T> function,
+                                     Object... params) {
+        return new Stage<>(name, Arrays.asList(params), List.of(input),
+                pipeline -> function.apply(pipeline.get(input)));
+    }
+
+    /**
+     * @param name what the stage computes
+     * @param first stage whose result is passed first to function
+     * @param second stage whose result is passed second to function
+     * @param function computes the result from the results of first and second
+     * @param params every parameter function depends on besides its inputs
+     */
+    public static <A, B, T> Stage<T> of(String name, Stage<A> first, Stage<B> second,
+                                        BiFunction<? super A, ? super B, ? extends T> function, Object... params) {
+        return new Stage<>(name, Arrays.asList(params), List.of(first, second),
+                pipeline -> function.apply(pipeline.get(first), pipeline.get(second)));
+    }
+
+    // Computes the result, fetching the inputs from pipeline
+    T compute(Pipeline pipeline) {
+        return compute.apply(pipeline);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public List<Stage<?>> getInputs() {
+        return inputs;
+    }
+
+    /**
+     * @return this stage and every stage it depends on, each once
+     */
+    public Set<Stage<?>> getGraph() {
+        Set<Stage<?>> graph = new HashSet<>();
+        Deque<Stage<?>> pending = new ArrayDeque<>();
+        pending.push(this);
+        while (!pending.isEmpty()) {
+            Stage<?> stage = pending.pop();
+            if (graph.add(stage))
+                stage.inputs.forEach(pending::push);
+        }
+        return graph;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o)
+            return true;
+        if (!(o instanceof Stage))
+            return false;
+        Stage<?> other = (Stage<?>) o;
+        return name.equals(other.name) && params.equals(other.params) && inputs.equals(other.inputs);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(name, params, inputs);
+    }
+
+    @Override
+    public String toString() {
+        return name + (params.isEmpty() ? "" : params.toString());
+    }
+}
@@ -0,0 +1,106 @@
+package seproject.model.edgedetector.pipeline;
+
+import java.util.List;
+
+import seproject.model.edgedetector.image.BytePlane;
+import seproject.model.edgedetector.image.EdgeMask;
+import seproject.model.edgedetector.image.ShortPlane;
+import seproject.model.edgedetector.imagederivatives.ConvolutionKernel;
+import seproject.model.edgedetector.imagederivatives.GradientOperator;
+import seproject.model.edgedetector.imagederivatives.ImageConvolution;
+import seproject.model.edgedetector.imagederivatives.ImageGradient;
+import seproject.model.edgedetector.imagederivatives.Padding;
+import seproject.model.edgedetector.util.Hysteresis;
+import seproject.model.edgedetector.util.NonMaximumSuppression;
+import seproject.model.edgedetector.util.Parallel;
+import seproject.model.edgedetector.util.Threshold;
+import seproject.model.edgedetector.util.ThresholdStrategy;
+
+/**
+ * The stages the detectors are built from.
+ */
+public class Stages {
+
+    /**
+     * The grayscale input image of the pipeline.
+     */
+    public static final Stage<BytePlane> IMAGE = new Stage<>("image", List.of(), List.of(), Pipeline::getImage);
+
+    /**
+     * The input image smoothed with the separable Gaussian kernel.
+     */
+    public static final Stage<BytePlane> SMOOTHED = Stage.of("gaussian", IMAGE,
+            image -> new ImageConvolution(image, ConvolutionKernel.GAUSSIAN_VECTOR, ConvolutionKernel.GAUSSIAN_VECTOR,
+                    Padding.SAME).getConvolvedPlane());
+
+    /**
+     * @param direction whether to quantize the gradient direction as well
+     * @return gradient of input, with SAME padding
+     */
+    public static Stage<ImageGradient> gradient(Stage<BytePlane> input, GradientOperator operator,
+                                                boolean L1norm, boolean direction) {
+        return Stage.of("gradient", input,
+                image -> new ImageGradient.Builder(image, operator)
+                        .L1norm(L1norm)
+                        .direction(direction)
+                        .build(),
+                operator, L1norm, direction);
+    }
+
+    /**
+     * @return gradient magnitude
+     */
+    public static Stage<ShortPlane> magnitude(Stage<ImageGradient> gradient) {
+        return Stage.of("magnitude", gradient, ImageGradient::getMagnitude);
+    }
+
+    /**
+     * @return thresholds picked by strategy from the histogram of magnitude
+     */
+    public static Stage<ThresholdStrategy.Thresholds> thresholds(Stage<ShortPlane> magnitude, ThresholdStrategy strategy) {
+        return Stage.of("thresholds", magnitude, plane -> Threshold.calcThresholds(plane, strategy), strategy);
+    }
+
+    /**
+     * @return mask of the pixels whose magnitude reaches the high threshold
+     */
+    public static Stage<EdgeMask> atLeast(Stage<ShortPlane> magnitude, Stage<ThresholdStrategy.Thresholds> thresholds) {
+        return Stage.of("at least", magnitude, thresholds,
+                (plane, threshold) -> Threshold.toEdgeMask(plane, threshold.getHigh()));
+    }
+
+    /**
+     * @return mask of the pixels whose magnitude exceeds the high threshold
+     */
+    public static Stage<EdgeMask> above(Stage<ShortPlane> magnitude, Stage<ThresholdStrategy.Thresholds> thresholds) {
+        return Stage.of("above", magnitude, thresholds,
+                (plane, threshold) -> Threshold.toEdgeMask(plane, threshold.getHigh() + 1));
+    }
+
+    /**
+     * @return copy of the magnitude of gradient after non-maximum suppression
+     */
+    public static Stage<ShortPlane> suppressed(Stage<ImageGradient> gradient, int lowThreshold) {
+        return Stage.of("suppressed", gradient, result -> {
+            // the magnitude is shared with other stages, suppress a copy
+            ShortPlane magnitude = result.getMagnitude().copy();
+            NonMaximumSuppression.suppress(magnitude, result.getDirection(), lowThreshold);
+            return magnitude;
+        }, lowThreshold);
+    }
+
+    /**
+     * Both hysteresis variants give the same edges, so the choice is not part
+     * of the stage.
+     *
+     * @return edges tracked by hysteresis on the suppressed magnitude
+     */
+    public static Stage<EdgeMask> hysteresis(Stage<ShortPlane> suppressed, int lowThreshold, int highThreshold,
+                                             int minEdgeSize, boolean parallelHysteresis) {
+        return Stage.of("hysteresis", suppressed,
+                magnitude -> parallelHysteresis && Parallel.getDefault().getParallelism() > 1
+                        ? Hysteresis.parallelHysteresis(magnitude, lowThreshold, highThreshold, minEdgeSize, Parallel.getDefault())
+                        : Hysteresis.hysteresis(magnitude, lowThreshold, highThreshold, minEdgeSize),
+                lowThreshold, highThreshold, minEdgeSize);
+    }
+}
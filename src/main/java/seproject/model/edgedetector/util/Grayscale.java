@@ -1,9 +1,58 @@
 package seproject.model.edgedetector.util;
 
 import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.ComponentSampleModel;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.Raster;
+import java.awt.image.SinglePixelPackedSampleModel;
 
+import seproject.model.edgedetector.image.BytePlane;
+
+/**
+ * Grayscale conversion.
+ * <P> TYPE_3BYTE_BGR, TYPE_4BYTE_ABGR, TYPE_INT_RGB, TYPE_INT_ARGB and
+ * TYPE_BYTE_GRAY images are read straight from their backing arrays in
+ * parallel row bands; any other type goes through getRGB one row at a time.
+ * Both give the same intensities as getRGB per pixel.
+ */
 public class Grayscale {
 
+    // Fixed-point weights, scaled by 2^16
+    private static final int SHIFT = 16;
+
+    /**
+     * Weights of the red, green and blue channels in the gray intensity.
+     */
+    public enum Luminance {
+        // (r + g + b) / 3; 3 * 21846 overshoots 2^16 by just enough to stay exact
+        AVERAGE(21846, 21846, 21846, 0),
+        // ITU-R BT.601, rounded
+        REC601(19595, 38470, 7471, 1 << (SHIFT - 1)),
+        // ITU-R BT.709, rounded
+        REC709(13933, 46871, 4732, 1 << (SHIFT - 1));
+
+        private final int red;
+        private final int green;
+        private final int blue;
+        private final int bias;
+
+        Luminance(int red, int green, int blue, int bias) {
+            this.red = red;
+            this.green = green;
+            this.blue = blue;
+            this.bias = bias;
+        }
+
+        /**
+         * @return gray intensity of the given 8-bit channels
+         */
+        public int gray(int r, int g, int b) {
+            return (red * r + green * g + blue * b + bias) >>> SHIFT;
+        }
+    }
+
     /**
      * Converts a given BufferedImage into grayscale.
      *
@@ -11,32 +60,38 @@ public class Grayscale {
      * @return the grayscale version of the input image
      */
     public static BufferedImage convertToGrayscale(BufferedImage image) {
+        return convertToGrayscale(image, Luminance.AVERAGE, Parallel.getDefault());
+    }
+
+    /**
+     * Converts a given BufferedImage into grayscale.
+     * <P> The intensities are stored through a table of the color space
+     * conversion setRGB applies, so the samples are the same as setting each
+     * gray pixel with setRGB.
+     *
+     * @param image the input BufferedImage
+     * @param luminance weights of the color channels
+     * @param parallel runs the row bands
+     * @return the grayscale version of the input image
+     */
+    public static BufferedImage convertToGrayscale(BufferedImage image, Luminance luminance, Parallel parallel) {
         int width = image.getWidth();
         int height = image.getHeight();
 
-        // Create a new BufferedImage to store the grayscale image
+        // Create a new BufferedImage and convert straight into its backing array
         BufferedImage grayImage = new BufferedImage(width, height, BufferedImage.TYPE_BYTE_GRAY);
+        byte[] gray = ((DataBufferByte) grayImage.getRaster().getDataBuffer()).getData();
+        convert(image, new BytePlane(gray, height, width, 0, width), luminance, parallel);
 
-        // Loop through each pixel in the image
-        for (int y = 0; y < height; y++) {
-            for (int x = 0; x < width; x++) {
-                int rgb = image.getRGB(x, y); // Get RGB value of the current pixel
-
-                // Extract individual RGB values
-                int r = (rgb >> 16) & 0xFF;
-                int g = (rgb >> 8) & 0xFF;
-                int b = rgb & 0xFF;
-
-                // Calculate the grayscale value using average method
-                int gray = (r + g + b) / 3;
-
-                // Create grayscale color
-                int grayRgb = (gray << 16) | (gray << 8) | gray;
-
-                // Set the new grayscale value into the grayscale image
-                grayImage.setRGB(x, y, grayRgb);
-            }
-        }
+        // sample setRGB stores for each gray value (v, v, v)
+        byte[] table = new byte[256];
+        ColorModel colorModel = grayImage.getColorModel();
+        for (int v = 0; v < 256; v++)
+            table[v] = ((byte[]) colorModel.getDataElements((v << 16) | (v << 8) | v, null))[0];
+        parallel.forEachBand(height, (from, to) -> {
+            for (int i = from * width; i < to * width; i++)
+                gray[i] = table[gray[i] & 0xFF];
+        });
         return grayImage;
     }
 
@@ -47,27 +102,154 @@ public class Grayscale {
      * @return a 2D array representing the grayscale intensities
      */
     public static int[][] imgToGrayPixels(BufferedImage image) {
-        int width = image.getWidth();
-        int height = image.getHeight();
-        int[][] grayPixels = new int[height][width];
+        return imgToGrayPlane(image).toArray();
+    }
+
+    /**
+     * Converts a given BufferedImage into a grayscale plane.
+     *
+     * @param image the input BufferedImage
+     * @return a plane holding the grayscale intensities
+     */
+    public static BytePlane imgToGrayPlane(BufferedImage image) {
+        return imgToGrayPlane(image, Luminance.AVERAGE, Parallel.getDefault());
+    }
 
-        // Loop through each pixel in the image
-        for (int y = 0; y < height; y++) {
-            for (int x = 0; x < width; x++) {
-                int rgb = image.getRGB(x, y);
+    /**
+     * Converts a given BufferedImage into a grayscale plane.
+     *
+     * @param image the input BufferedImage
+     * @param luminance weights of the color channels
+     * @param parallel runs the row bands
+     * @return a plane holding the grayscale intensities
+     */
+    public static BytePlane imgToGrayPlane(BufferedImage image, Luminance luminance, Parallel parallel) {
+        BytePlane grayPlane = new BytePlane(image.getHeight(), image.getWidth());
+        convert(image, grayPlane, luminance, parallel);
+        return grayPlane;
+    }
 
-                // Extract individual RGB values
-                int r = (rgb >> 16) & 0xFF;
-                int g = (rgb >> 8) & 0xFF;
-                int b = rgb & 0xFF;
+    // Picks the conversion for the layout of the raster
+    private static void convert(BufferedImage image, BytePlane gray, Luminance luminance, Parallel parallel) {
+        Raster raster = image.getRaster();
+        switch (image.getType()) {
+            case BufferedImage.TYPE_3BYTE_BGR:
+            case BufferedImage.TYPE_4BYTE_ABGR:
+                convertInterleaved(raster, gray, luminance, parallel);
+                break;
+            case BufferedImage.TYPE_INT_RGB:
+            case BufferedImage.TYPE_INT_ARGB:
+                convertPacked(raster, gray, luminance, parallel);
+                break;
+            case BufferedImage.TYPE_BYTE_GRAY:
+                convertGray(raster, image.getColorModel(), gray, parallel);
+                break;
+            default:
+                convertRGB(image, gray, luminance, parallel);
+        }
+    }
 
-                // Calculate the grayscale value using the average method
-                int gray = (r + g + b) / 3;
+    /**
+     * Byte samples interleaved per pixel, e.g. B, G, R (, A) in the order given
+     * by the band offsets of the sample model.
+     */
+    private static void convertInterleaved(Raster raster, BytePlane gray, Luminance luminance, Parallel parallel) {
+        ComponentSampleModel model = (ComponentSampleModel) raster.getSampleModel();
+        DataBufferByte buffer = (DataBufferByte) raster.getDataBuffer();
+        byte[] data = buffer.getData();
+        int[] bandOffsets = model.getBandOffsets();
+        int pixelStride = model.getPixelStride();
+        int scanlineStride = model.getScanlineStride();
+        // sub-images are translated views into the parent's buffer
+        int origin = buffer.getOffset()
+                - raster.getSampleModelTranslateY() * scanlineStride
+                - raster.getSampleModelTranslateX() * pixelStride;
+        int red = bandOffsets[0];
+        int green = bandOffsets[1];
+        int blue = bandOffsets[2];
+        byte[] out = gray.getData();
 
-                // Store grayscale value in 2D array
-                grayPixels[y][x] = gray;
+        parallel.forEachBand(gray.getRows(), (from, to) -> {
+            for (int y = from; y < to; y++) {
+                int in = origin + y * scanlineStride;
+                int index = gray.index(y, 0);
+                for (int x = 0; x < gray.getColumns(); x++, in += pixelStride)
+                    out[index + x] = (byte) luminance.gray(data[in + red] & 0xFF, data[in + green] & 0xFF,
+                            data[in + blue] & 0xFF);
             }
-        }
-        return grayPixels;
+        });
+    }
+
+    /**
+     * One int per pixel holding 0x(AA)RRGGBB.
+     */
+    private static void convertPacked(Raster raster, BytePlane gray, Luminance luminance, Parallel parallel) {
+        SinglePixelPackedSampleModel model = (SinglePixelPackedSampleModel) raster.getSampleModel();
+        DataBufferInt buffer = (DataBufferInt) raster.getDataBuffer();
+        int[] data = buffer.getData();
+        int scanlineStride = model.getScanlineStride();
+        int origin = buffer.getOffset()
+                - raster.getSampleModelTranslateY() * scanlineStride
+                - raster.getSampleModelTranslateX();
+        byte[] out = gray.getData();
+
+        parallel.forEachBand(gray.getRows(), (from, to) -> {
+            for (int y = from; y < to; y++) {
+                int in = origin + y * scanlineStride;
+                int index = gray.index(y, 0);
+                for (int x = 0; x < gray.getColumns(); x++) {
+                    int rgb = data[in + x];
+                    out[index + x] = (byte) luminance.gray((rgb >> 16) & 0xFF, (rgb >> 8) & 0xFF, rgb & 0xFF);
+                }
+            }
+        });
+    }
+
+    /**
+     * One byte per pixel. getRGB maps gray samples through the color space of
+     * the image, so the samples go through a table of the same mapping; all
+     * weights give back the gray value itself.
+     */
+    private static void convertGray(Raster raster, ColorModel colorModel, BytePlane gray, Parallel parallel) {
+        ComponentSampleModel model = (ComponentSampleModel) raster.getSampleModel();
+        DataBufferByte buffer = (DataBufferByte) raster.getDataBuffer();
+        byte[] data = buffer.getData();
+        int scanlineStride = model.getScanlineStride();
+        int origin = buffer.getOffset() + model.getBandOffsets()[0]
+                - raster.getSampleModelTranslateY() * scanlineStride
+                - raster.getSampleModelTranslateX();
+        byte[] table = new byte[256];
+        for (int v = 0; v < 256; v++)
+            table[v] = (byte) colorModel.getBlue(v);
+        byte[] out = gray.getData();
+
+        parallel.forEachBand(gray.getRows(), (from, to) -> {
+            for (int y = from; y < to; y++) {
+                int in = origin + y * scanlineStride;
+                int index = gray.index(y, 0);
+                for (int x = 0; x < gray.getColumns(); x++)
+                    out[index + x] = table[data[in + x] & 0xFF];
+            }
+        });
+    }
+
+    /**
+     * Any other layout: fetch one row at a time through the color model.
+     */
+    private static void convertRGB(BufferedImage image, BytePlane gray, Luminance luminance, Parallel parallel) {
+        int width = gray.getColumns();
+        byte[] out = gray.getData();
+
+        parallel.forEachBand(gray.getRows(), (from, to) -> {
+            int[] rgbRow = new int[width];
+            for (int y = from; y < to; y++) {
+                image.getRGB(0, y, width, 1, rgbRow, 0, width);
+                int index = gray.index(y, 0);
+                for (int x = 0; x < width; x++) {
+                    int rgb = rgbRow[x];
+                    out[index + x] = (byte) luminance.gray((rgb >> 16) & 0xFF, (rgb >> 8) & 0xFF, rgb & 0xFF);
+                }
+            }
+        });
     }
 }
@@ -0,0 +1,156 @@
+package seproject.model.edgedetector.util;
+
+import seproject.model.edgedetector.image.BytePlane;
+import seproject.model.edgedetector.image.ShortPlane;
+
+/**
+ * Integer histogram of the samples of a plane, covering the values [min, max].
+ * <P> Built in a single pass; the statistics the threshold strategies need
+ * are then O(# of bins) instead of O(# of pixels).
+ */
+public class Histogram {
+
+    private final int min;          // value of counts[0]
+    private final int[] counts;     // # of samples with the value min + i
+    private final long total;       // # of samples
+
+    /**
+     * @param min value of the first bin
+     * @param counts # of samples per value, starting at min
+     */
+    public Histogram(int min, int[] counts) {
+        this.min = min;
+        this.counts = counts;
+        long total = 0;
+        for (int count : counts)
+            total += count;
+        this.total = total;
+    }
+
+    /**
+     * @return histogram of the samples of plane
+     */
+    public static Histogram of(ShortPlane plane) {
+        return ImageStatistics.of(plane).getHistogram();
+    }
+
+    /**
+     * @return histogram of the samples of plane
+     */
+    public static Histogram of(BytePlane plane) {
+        return ImageStatistics.of(plane).getHistogram();
+    }
+
+    // Drops the empty bins below the smallest and above the largest value
+    static Histogram trimmed(int[] counts, int offset) {
+        int first = 0;
+        while (first < counts.length - 1 && counts[first] == 0)
+            first++;
+        int last = counts.length - 1;
+        while (last > first && counts[last] == 0)
+            last--;
+        int[] trimmed = new int[last - first + 1];
+        System.arraycopy(counts, first, trimmed, 0, trimmed.length);
+        return new Histogram(first + offset, trimmed);
+    }
+
+    /**
+     * @return mean of the samples
+     */
+    public double mean() {
+        long sum = 0;
+        for (int i = 0; i < counts.length; i++)
+            sum += (long) (min + i) * counts[i];
+        return sum / (double) total;
+    }
+
+    /**
+     * @return population variance of the samples
+     */
+    public double variance() {
+        double mean = mean();
+        double sum = 0;
+        for (int i = 0; i < counts.length; i++) {
+            double offMean = min + i - mean;
+            sum += offMean * offMean * counts[i];
+        }
+        return sum / total;
+    }
+
+    /**
+     * @param fraction fraction of the samples, in [0, 1)
+     * @return the smallest value v with more than fraction of the samples &lt;= v
+     */
+    public int percentile(double fraction) {
+        double target = fraction * total;
+        long cumulative = 0;
+        for (int i = 0; i < counts.length; i++) {
+            cumulative += counts[i];
+            if (cumulative > target)
+                return min + i;
+        }
+        return getMax();
+    }
+
+    /**
+     * Otsu's method: the threshold t that maximises the between-class
+     * variance of the classes (&lt;= t) and (&gt; t).
+     *
+     * @return t
+     */
+    public int otsu() {
+        double sum = 0;
+        for (int i = 0; i < counts.length; i++)
+            sum += (double) i * counts[i];
+
+        double sumBelow = 0;
+        long countBelow = 0;
+        double best = -1;
+        int threshold = 0;
+        for (int i = 0; i < counts.length; i++) {
+            countBelow += counts[i];
+            sumBelow += (double) i * counts[i];
+            long countAbove = total - countBelow;
+            if (countBelow == 0)
+                continue;
+            if (countAbove == 0)
+                break;
+            double meanBelow = sumBelow / countBelow;
+            double meanAbove = (sum - sumBelow) / countAbove;
+            double between = (double) countBelow * countAbove * (meanBelow - meanAbove) * (meanBelow - meanAbove);
+            if (between > best) {
+                best = between;
+                threshold = i;
+            }
+        }
+        return min + threshold;
+    }
+
+    /**
+     * @return # of samples with the given value
+     */
+    public int count(int value) {
+        return (value < min || value > getMax()) ? 0 : counts[value - min];
+    }
+
+    /**
+     * @return # of samples
+     */
+    public long getTotal() {
+        return total;
+    }
+
+    /**
+     * @return smallest value
+     */
+    public int getMin() {
+        return min;
+    }
+
+    /**
+     * @return largest value
+     */
+    public int getMax() {
+        return min + counts.length - 1;
+    }
+}
@@ -0,0 +1,251 @@
+package seproject.model.edgedetector.util;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
+import seproject.model.edgedetector.image.EdgeMask;
+import seproject.model.edgedetector.image.ShortPlane;
+
+/**
+ * Edge tracking by hysteresis for the Canny detector.
+ * <P> Pixels with a magnitude of at least lowThreshold are edge candidates.
+ * An 8-connected component of candidates becomes an edge if it contains a
+ * strong pixel (magnitude of at least highThreshold) and has at least
+ * minEdgeSize pixels.
+ * <P> hysteresis floods components iteratively with a primitive int queue, so
+ * long edges in large images cannot overflow the stack, and no objects are
+ * allocated per pixel. parallelHysteresis labels row tiles concurrently with
+ * union-find and merges the labels across tile borders; both give the same
+ * edges.
+ */
+public class Hysteresis {
+
+    // Per pixel states of the flood fill
+    private static final byte BELOW = 0;        // below lowThreshold
+    private static final byte CANDIDATE = 1;    // weak or strong, not reached yet
+    private static final byte VISITED = 2;      // already part of a component
+
+    // Parent of a pixel that is not a candidate
+    private static final int NONE = -1;
+
+    // Tiles per worker, so uneven tiles still balance out
+    private static final int TILES_PER_THREAD = 4;
+
+    // Lock-free access to the union-find parents and component sizes
+    private static final VarHandle INTS = MethodHandles.arrayElementVarHandle(int[].class);
+
+    /**
+     * @param magnitude gradient magnitude after non-maximum suppression
+     * @param lowThreshold magnitude from which a pixel is a weak edge
+     * @param highThreshold magnitude from which a pixel is a strong edge
+     * @param minEdgeSize smallest # of pixels of an edge
+     * @return mask of the pixels that lie on an accepted edge
+     */
+    public static EdgeMask hysteresis(ShortPlane magnitude, int lowThreshold, int highThreshold, int minEdgeSize) {
+        int rows = magnitude.getRows();
+        int columns = magnitude.getColumns();
+        EdgeMask edges = new EdgeMask(rows, columns);
+
+        // classify every pixel once
+        byte[] state = new byte[rows * columns];
+        for (int i = 0; i < rows; i++)
+            for (int j = 0; j < columns; j++)
+                if (magnitude.get(i, j) >= lowThreshold)
+                    state[i * columns + j] = CANDIDATE;
+
+        // queue[0, tail) holds the component being flooded, in visiting order
+        int[] queue = new int[rows * columns];
+        for (int i = 0; i < rows; i++) {
+            Parallel.checkInterrupted();
+            for (int j = 0; j < columns; j++) {
+                int index = i * columns + j;
+                if (state[index] != CANDIDATE || magnitude.get(i, j) < highThreshold)
+                    continue;
+
+                int tail = flood(state, queue, index, rows, columns);
+                if (tail >= minEdgeSize)
+                    for (int k = 0; k < tail; k++)
+                        edges.set(queue[k] / columns, queue[k] % columns, true);
+            }
+        }
+        return edges;
+    }
+
+    /**
+     * Breadth-first flood of the candidates 8-connected to seed.
+     *
+     * @return # of pixels in the component, stored at the start of queue
+     */
+    private static int flood(byte[] state, int[] queue, int seed, int rows, int columns) {
+        int head = 0;
+        int tail = 0;
+        state[seed] = VISITED;
+        queue[tail++] = seed;
+
+        while (head < tail) {
+            int index = queue[head++];
+            int r = index / columns;
+            int c = index - r * columns;
+            int rowFrom = Math.max(r - 1, 0);
+            int rowTo = Math.min(r + 1, rows - 1);
+            int colFrom = Math.max(c - 1, 0);
+            int colTo = Math.min(c + 1, columns - 1);
+
+            for (int nr = rowFrom; nr <= rowTo; nr++) {
+                for (int nc = colFrom; nc <= colTo; nc++) {
+                    int neighbour = nr * columns + nc;
+                    if (state[neighbour] == CANDIDATE) {
+                        state[neighbour] = VISITED;
+                        queue[tail++] = neighbour;
+                    }
+                }
+            }
+        }
+        return tail;
+    }
+
+    /**
+     * Same edges as hysteresis, computed in parallel.
+     * <P> The rows are cut into tiles. Each tile labels its candidates with a
+     * sequential union-find, then the labels are merged across tile borders
+     * with a lock-free union (compare-and-set on the parent of a root), and
+     * finally every component counts its pixels and whether it holds a strong
+     * pixel.
+     *
+     * @param parallel runs the tiles
+     */
+    public static EdgeMask parallelHysteresis(ShortPlane magnitude, int lowThreshold, int highThreshold,
+                                                 int minEdgeSize, Parallel parallel) {
+        int rows = magnitude.getRows();
+        int columns = magnitude.getColumns();
+        EdgeMask edges = new EdgeMask(rows, columns);
+        int tileRows = Math.max(Parallel.MIN_BAND_ROWS,
+                (rows + parallel.getParallelism() * TILES_PER_THREAD - 1) / (parallel.getParallelism() * TILES_PER_THREAD));
+        int tiles = (rows + tileRows - 1) / tileRows;
+
+        int[] parent = new int[rows * columns];
+        int[] size = new int[rows * columns];
+        boolean[] strong = new boolean[rows * columns];
+
+        // 1. label every tile on its own
+        parallel.forEachBand(tiles, 1, (from, to) -> {
+            for (int t = from; t < to; t++)
+                labelTile(magnitude, lowThreshold, parent, t * tileRows, Math.min(rows, (t + 1) * tileRows));
+        });
+
+        // 2. merge the first row of every tile with the last row of the tile above
+        parallel.forEachBand(tiles, 1, (from, to) -> {
+            for (int t = Math.max(from, 1); t < to; t++) {
+                int r = t * tileRows;
+                for (int c = 0; c < columns; c++) {
+                    int index = r * columns + c;
+                    if (parent[index] == NONE)
+                        continue;
+                    for (int nc = Math.max(c - 1, 0); nc <= Math.min(c + 1, columns - 1); nc++)
+                        if (parent[index - columns + nc - c] != NONE)
+                            unionConcurrent(parent, index, index - columns + nc - c);
+                }
+            }
+        });
+
+        // 3. point every candidate at its root and gather the component statistics
+        parallel.forEachBand(tiles, 1, (from, to) -> {
+            for (int i = from * tileRows; i < Math.min(rows, to * tileRows); i++) {
+                for (int j = 0; j < columns; j++) {
+                    int index = i * columns + j;
+                    if (parent[index] == NONE)
+                        continue;
+                    int root = find(parent, index);
+                    parent[index] = root;
+                    INTS.getAndAdd(size, root, 1);
+                    if (magnitude.get(i, j) >= highThreshold)
+                        strong[root] = true;
+                }
+            }
+        });
+
+        // 4. keep the components with a strong pixel and enough pixels; bands own whole rows of the mask
+        parallel.forEachBand(rows, (from, to) -> {
+            for (int i = from; i < to; i++) {
+                for (int j = 0; j < columns; j++) {
+                    int root = parent[i * columns + j];
+                    if (root != NONE && strong[root] && size[root] >= minEdgeSize)
+                        edges.set(i, j, true);
+                }
+            }
+        });
+        return edges;
+    }
+
+    /**
+     * Sequential union-find over the rows [from, to), linking each candidate
+     * with its already scanned neighbours inside the tile.
+     */
+    private static void labelTile(ShortPlane magnitude, int lowThreshold, int[] parent, int from, int to) {
+        int columns = magnitude.getColumns();
+        for (int i = from; i < to; i++) {
+            for (int j = 0; j < columns; j++) {
+                int index = i * columns + j;
+                if (magnitude.get(i, j) < lowThreshold) {
+                    parent[index] = NONE;
+                    continue;
+                }
+                parent[index] = index;
+                if (j > 0 && parent[index - 1] != NONE)
+                    union(parent, index, index - 1);
+                if (i > from) {
+                    for (int nc = Math.max(j - 1, 0); nc <= Math.min(j + 1, columns - 1); nc++) {
+                        int neighbour = index - columns + nc - j;
+                        if (parent[neighbour] != NONE)
+                            union(parent, index, neighbour);
+                    }
+                }
+            }
+        }
+    }
+
+    // Root of index, halving the path on the way
+    private static int find(int[] parent, int index) {
+        while (parent[index] != index) {
+            int next = parent[index];
+            parent[index] = parent[next];
+            index = next;
+        }
+        return index;
+    }
+
+    private static void union(int[] parent, int a, int b) {
+        a = find(parent, a);
+        b = find(parent, b);
+        if (a < b)
+            parent[b] = a;
+        else if (b < a)
+            parent[a] = b;
+    }
+
+    // Root of index without writing, safe while other threads link roots
+    private static int findConcurrent(int[] parent, int index) {
+        int next;
+        while ((next = (int) INTS.getVolatile(parent, index)) != index)
+            index = next;
+        return index;
+    }
+
+    /**
+     * Links the roots of a and b. Only roots are ever changed, and only from
+     * pointing at themselves to a smaller index, so a failed compare-and-set
+     * means another thread linked that root first and the roots are looked up again.
+     */
+    private static void unionConcurrent(int[] parent, int a, int b) {
+        while (true) {
+            a = findConcurrent(parent, a);
+            b = findConcurrent(parent, b);
+            if (a == b)
+                return;
+            int larger = Math.max(a, b);
+            int smaller = Math.min(a, b);
+            if (INTS.compareAndSet(parent, larger, larger, smaller))
+                return;
+        }
+    }
+}
@@ -0,0 +1,340 @@
+package seproject.model.edgedetector.util;
+
+import seproject.model.edgedetector.image.BytePlane;
+import seproject.model.edgedetector.image.Plane;
+import seproject.model.edgedetector.image.ShortPlane;
+
+/**
+ * Count, min, max, mean, variance and (optionally) the histogram of a set of
+ * samples, gathered in a single pass.
+ * <P> Every row is accumulated with Welford's update, next to an exact integer
+ * sum; rows, blocks and tiles are then combined with Chan's parallel form of
+ * it. Both stay stable where sum of squares minus squared sum would cancel.
+ * The plane is reduced in fixed blocks of rows merged in block order, so the
+ * result does not depend on the parallelism. For a sub-region, pass a
+ * subPlane view.
+ */
+public class ImageStatistics {
+
+    // Rows per block of the parallel reduction
+    private static final int BLOCK_ROWS = 64;
+
+    private final int binOffset;    // value of histogram[0]
+    private final int[] histogram;  // # of samples per value, or null
+    private long count;
+    private long sum;               // exact, so the mean matches a plain two-pass mean
+    private double m2;              // sum of squared distances to the mean
+    private int min = Integer.MAX_VALUE;
+    private int max = Integer.MIN_VALUE;
+
+    private ImageStatistics(int binOffset, int[] histogram) {
+        this.binOffset = binOffset;
+        this.histogram = histogram;
+    }
+
+    /**
+     * @param histogram whether to count the samples per value
+     * @return an empty accumulator for unsigned 8-bit samples
+     */
+    public static ImageStatistics forBytes(boolean histogram) {
+        return new ImageStatistics(0, histogram ? new int[256] : null);
+    }
+
+    /**
+     * @param histogram whether to count the samples per value
+     * @return an empty accumulator for signed 16-bit samples
+     */
+    public static ImageStatistics forShorts(boolean histogram) {
+        return new ImageStatistics(Short.MIN_VALUE, histogram ? new int[1 << 16] : null);
+    }
+
+    /**
+     * Statistics of every sample of plane, with the histogram.
+     */
+    public static ImageStatistics of(BytePlane plane) {
+        return of(plane, true, Parallel.getDefault());
+    }
+
+    /**
+     * Statistics of every sample of plane, with the histogram.
+     */
+    public static ImageStatistics of(ShortPlane plane) {
+        return of(plane, true, Parallel.getDefault());
+    }
+
+    public static ImageStatistics of(BytePlane plane, boolean histogram, Parallel parallel) {
+        byte[] data = plane.getData();
+        return reduce(plane, forBytes(histogram), parallel,
+                (block, counts, row) -> block.addRow(data, plane.index(row, 0), plane.getColumns(), counts));
+    }
+
+    public static ImageStatistics of(ShortPlane plane, boolean histogram, Parallel parallel) {
+        short[] data = plane.getData();
+        return reduce(plane, forShorts(histogram), parallel,
+                (block, counts, row) -> block.addRow(data, plane.index(row, 0), plane.getColumns(), counts));
+    }
+
+    /**
+     * Statistics of every tile of plane, e.g. for adaptive thresholds. Tiles
+     * in the last row and column are cut at the border of the plane.
+     *
+     * @return tiles[i][j] for the tile starting at (i * tileRows, j * tileColumns)
+     */
+    public static ImageStatistics[][] ofTiles(BytePlane plane, int tileRows, int tileColumns,
+                                              boolean histogram, Parallel parallel) {
+        ImageStatistics[][] tiles = newTiles(plane, tileRows, tileColumns);
+        parallel.forEachBand(tiles.length, 1, (from, to) -> {
+            for (int t = from; t < to; t++) {
+                for (int u = 0; u < tiles[t].length; u++) {
+                    BytePlane tile = plane.subPlane(t * tileRows, u * tileColumns,
+                            Math.min(tileRows, plane.getRows() - t * tileRows),
+                            Math.min(tileColumns, plane.getColumns() - u * tileColumns));
+                    tiles[t][u] = of(tile, histogram, Parallel.sequential());
+                }
+            }
+        });
+        return tiles;
+    }
+
+    /**
+     * Statistics of every tile of plane, e.g. for adaptive thresholds. Tiles
+     * in the last row and column are cut at the border of the plane.
+     *
+     * @return tiles[i][j] for the tile starting at (i * tileRows, j * tileColumns)
+     */
+    public static ImageStatistics[][] ofTiles(ShortPlane plane, int tileRows, int tileColumns,
+                                              boolean histogram, Parallel parallel) {
+        ImageStatistics[][] tiles = newTiles(plane, tileRows, tileColumns);
+        parallel.forEachBand(tiles.length, 1, (from, to) -> {
+            for (int t = from; t < to; t++) {
+                for (int u = 0; u < tiles[t].length; u++) {
+                    ShortPlane tile = plane.subPlane(t * tileRows, u * tileColumns,
+                            Math.min(tileRows, plane.getRows() - t * tileRows),
+                            Math.min(tileColumns, plane.getColumns() - u * tileColumns));
+                    tiles[t][u] = of(tile, histogram, Parallel.sequential());
+                }
+            }
+        });
+        return tiles;
+    }
+
+    private static ImageStatistics[][] newTiles(Plane plane, int tileRows, int tileColumns) {
+        if (tileRows < 1 || tileColumns < 1)
+            throw new IllegalArgumentException("Tiles must have at least one row and one column");
+        return new ImageStatistics[(plane.getRows() + tileRows - 1) / tileRows]
+                [(plane.getColumns() + tileColumns - 1) / tileColumns];
+    }
+
+    // Adds one row of the plane to block, and its values to counts if not null
+    @FunctionalInterface
+    private interface RowAccumulator {
+        void accumulate(ImageStatistics block, int[] counts, int row);
+    }
+
+    private static ImageStatistics reduce(Plane plane, ImageStatistics result, Parallel parallel, RowAccumulator rows) {
+        int blocks = (plane.getRows() + BLOCK_ROWS - 1) / BLOCK_ROWS;
+        ImageStatistics[] partial = new ImageStatistics[blocks];
+
+        parallel.forEachBand(blocks, 1, (from, to) -> {
+            // histogram counts are exact, so each band keeps a single array
+            int[] counts = result.histogram == null ? null : new int[result.histogram.length];
+            int bandMin = Integer.MAX_VALUE;
+            int bandMax = Integer.MIN_VALUE;
+            for (int b = from; b < to; b++) {
+                partial[b] = new ImageStatistics(result.binOffset, null);
+                for (int r = b * BLOCK_ROWS; r < Math.min(plane.getRows(), (b + 1) * BLOCK_ROWS); r++)
+                    rows.accumulate(partial[b], counts, r);
+                bandMin = Math.min(bandMin, partial[b].min);
+                bandMax = Math.max(bandMax, partial[b].max);
+            }
+            // only bins in [bandMin, bandMax] can be non-zero, e.g. a few
+            // hundred of the 65536 for gradient magnitudes
+            if (counts != null && bandMin <= bandMax) {
+                synchronized (result) {
+                    for (int i = bandMin - result.binOffset; i <= bandMax - result.binOffset; i++)
+                        result.histogram[i] += counts[i];
+                }
+            }
+        });
+
+        for (ImageStatistics block : partial)
+            result.mergeMoments(block);
+        return result;
+    }
+
+    private void addRow(byte[] data, int from, int length, int[] counts) {
+        long rowSum = 0;
+        double rowMean = 0;
+        double rowM2 = 0;
+        int rowMin = Integer.MAX_VALUE;
+        int rowMax = Integer.MIN_VALUE;
+        for (int i = from, n = 1; i < from + length; i++, n++) {
+            int value = data[i] & 0xFF;
+            rowSum += value;
+            double delta = value - rowMean;
+            rowMean += delta / n;
+            rowM2 += delta * (value - rowMean);
+            rowMin = Math.min(rowMin, value);
+            rowMax = Math.max(rowMax, value);
+            if (counts != null)
+                counts[value]++;
+        }
+        merge(length, rowSum, rowM2, rowMin, rowMax);
+    }
+
+    private void addRow(short[] data, int from, int length, int[] counts) {
+        long rowSum = 0;
+        double rowMean = 0;
+        double rowM2 = 0;
+        int rowMin = Integer.MAX_VALUE;
+        int rowMax = Integer.MIN_VALUE;
+        for (int i = from, n = 1; i < from + length; i++, n++) {
+            int value = data[i];
+            rowSum += value;
+            double delta = value - rowMean;
+            rowMean += delta / n;
+            rowM2 += delta * (value - rowMean);
+            rowMin = Math.min(rowMin, value);
+            rowMax = Math.max(rowMax, value);
+            if (counts != null)
+                counts[value - Short.MIN_VALUE]++;
+        }
+        merge(length, rowSum, rowM2, rowMin, rowMax);
+    }
+
+    /**
+     * Adds a single sample (Welford's update).
+     */
+    public void add(int value) {
+        if (histogram != null) {
+            if (value - binOffset < 0 || value - binOffset >= histogram.length)
+                throw new IllegalArgumentException("Value is outside of the histogram");
+            histogram[value - binOffset]++;
+        }
+        double oldMean = count == 0 ? 0 : getMean();
+        count++;
+        sum += value;
+        m2 += (value - oldMean) * (value - getMean());
+        min = Math.min(min, value);
+        max = Math.max(max, value);
+    }
+
+    /**
+     * Adds the samples of other to this accumulator (Chan's update). Both
+     * must hold the same sample type; the histogram is merged only if both
+     * keep one.
+     */
+    public void merge(ImageStatistics other) {
+        if (other.binOffset != binOffset)
+            throw new IllegalArgumentException("Statistics of different sample types");
+        if (histogram != null && other.histogram != null)
+            for (int i = 0; i < histogram.length; i++)
+                histogram[i] += other.histogram[i];
+        mergeMoments(other);
+    }
+
+    private void mergeMoments(ImageStatistics other) {
+        merge(other.count, other.sum, other.m2, other.min, other.max);
+    }
+
+    private void merge(long otherCount, long otherSum, double otherM2, int otherMin, int otherMax) {
+        if (otherCount == 0)
+            return;
+        if (count == 0) {
+            count = otherCount;
+            sum = otherSum;
+            m2 = otherM2;
+        } else {
+            double delta = otherSum / (double) otherCount - getMean();
+            long total = count + otherCount;
+            m2 += otherM2 + delta * delta * ((double) count * otherCount / total);
+            count = total;
+            sum += otherSum;
+        }
+        min = Math.min(min, otherMin);
+        max = Math.max(max, otherMax);
+    }
+
+    /**
+     * @return # of samples
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * @return sum of the samples
+     */
+    public long getSum() {
+        return sum;
+    }
+
+    /**
+     * @return smallest sample
+     */
+    public int getMin() {
+        checkNotEmpty();
+        return min;
+    }
+
+    /**
+     * @return largest sample
+     */
+    public int getMax() {
+        checkNotEmpty();
+        return max;
+    }
+
+    /**
+     * @return mean of the samples
+     */
+    public double getMean() {
+        checkNotEmpty();
+        return sum / (double) count;
+    }
+
+    /**
+     * @return population variance of the samples
+     */
+    public double getVariance() {
+        checkNotEmpty();
+        return m2 / count;
+    }
+
+    /**
+     * @return sample variance of the samples (divided by count - 1)
+     */
+    public double getSampleVariance() {
+        checkNotEmpty();
+        return count == 1 ? 0 : m2 / (count - 1);
+    }
+
+    /**
+     * @return population standard deviation of the samples
+     */
+    public double getStdDev() {
+        return Math.sqrt(getVariance());
+    }
+
+    /**
+     * @return histogram of the samples, trimmed to [min, max]
+     */
+    public Histogram getHistogram() {
+        if (histogram == null)
+            throw new IllegalStateException("Statistics were gathered without a histogram");
+        checkNotEmpty();
+        return Histogram.trimmed(histogram, binOffset);
+    }
+
+    private void checkNotEmpty() {
+        if (count == 0)
+            throw new IllegalStateException("No samples");
+    }
+
+    @Override
+    public String toString() {
+        return count == 0 ? "ImageStatistics(empty)"
+                : "ImageStatistics(count = " + count + ", min = " + min + ", max = " + max
+                + ", mean = " + getMean() + ", std. dev. = " + getStdDev() + ")";
+    }
+}
@@ -1,73 +1,220 @@
 package seproject.model.edgedetector.util;
 
 import java.util.Arrays;
+import java.util.Comparator;
 import java.util.Random;
 
+/**
+ * K-means clustering.
+ * <P> Points are either given one by one, or as a weighted 1D histogram
+ * (value, count), in which case each iteration costs O(bins * k) instead of
+ * O(points * k). For integer values the weighted mode gives exactly the
+ * centroids of the per point mode on the same values, in any order, given
+ * the same seed: 1D initial centroids are drawn by rank, not by position.
+ * <P> Points are stored flat in row-major order. Assignment and centroid
+ * update run as one parallel pass over fixed chunks of points; every chunk
+ * keeps its own partial sums, which are merged in chunk order, so the result
+ * does not depend on the parallelism.
+ */
 public class KMeans {
 
+    // Points per chunk of the parallel passes
+    private static final int CHUNK = 4096;
+
     private int k;
-    private double[][] points;
-    private double[][] centroids;
+    private int dimension;          // # of coordinates per point
+    private int n;                  // # of points
+    private double[] points;        // n x dimension, row-major
+    private int[] weights;          // # of points per entry of points, or null if all 1
+    private long seed;
+    private double[] centroids;     // k x dimension, row-major
+    private int[] labels;           // closest centroid of every point
     private int maxIterations;
+    private int iterations;         // # of iterations run
     private double epsilon;
     private boolean useEpsilon;
+    private boolean useKMeansPlusPlus;
+    private Parallel parallel;
 
     // Constructor
     public KMeans(Builder builder) {
         this.k = builder.k;
+        this.dimension = builder.dimension;
         this.points = builder.points;
+        this.n = points.length / dimension;
+        this.weights = builder.weights;
+        this.seed = builder.seed;
         this.maxIterations = builder.maxIterations;
         this.epsilon = builder.epsilon;
         this.useEpsilon = builder.useEpsilon;
+        this.useKMeansPlusPlus = builder.useKMeansPlusPlus;
+        this.parallel = builder.parallel;
+        this.labels = new int[n];
         initializeCentroids();
         runKMeans();
     }
 
-    // Method to initialize centroids randomly
+    // Method to initialize centroids, uniformly or with k-means++
     private void initializeCentroids() {
-        centroids = new double[k][points[0].length];
-        Random rand = new Random();
-        for (int i = 0; i < k; i++) {
-            centroids[i] = points[rand.nextInt(points.length)].clone();
+        centroids = new double[k * dimension];
+
+        // 1D points are drawn by rank among the sorted values, so the draw does not
+        // depend on the order of the points, and a histogram draws the same values
+        // as the points it counts
+        double[] candidates;
+        int[] candidateWeights;
+        if (dimension == 1 && weights == null) {
+            candidates = points.clone();
+            Arrays.sort(candidates);
+            candidateWeights = null;
+        } else if (dimension == 1 && !isSorted(points)) {
+            Integer[] order = new Integer[n];
+            for (int i = 0; i < n; i++)
+                order[i] = i;
+            Arrays.sort(order, Comparator.comparingDouble(i -> points[i]));
+            candidates = new double[n];
+            candidateWeights = new int[n];
+            for (int i = 0; i < n; i++) {
+                candidates[i] = points[order[i]];
+                candidateWeights[i] = weights[order[i]];
+            }
+        } else {
+            candidates = points;
+            candidateWeights = weights;
+        }
+
+        Random rand = new Random(seed);
+        if (!useKMeansPlusPlus) {
+            for (int i = 0; i < k; i++)
+                System.arraycopy(candidates, pointAt(candidateWeights, rand.nextInt(size())) * dimension,
+                        centroids, i * dimension, dimension);
+            return;
+        }
+
+        // k-means++: every further centroid is drawn with probability ~ weight * D^2,
+        // D being the distance to the closest centroid drawn so far
+        System.arraycopy(candidates, pointAt(candidateWeights, rand.nextInt(size())) * dimension, centroids, 0, dimension);
+        double[] distances = new double[n];
+        Arrays.fill(distances, Double.MAX_VALUE);
+        for (int c = 1; c < k; c++) {
+            int last = c - 1;
+            forEachChunk((from, to) -> {
+                for (int i = from; i < to; i++) {
+                    double distance = squaredDistance(candidates, i, last) * weight(candidateWeights, i);
+                    if (distance < distances[i])
+                        distances[i] = distance;
+                }
+            });
+
+            double sum = 0;
+            for (int i = 0; i < n; i++)
+                sum += distances[i];
+            int next;
+            if (sum > 0) {
+                double target = rand.nextDouble() * sum;
+                next = 0;
+                while (next < n - 1 && (target -= distances[next]) >= 0)
+                    next++;
+                // skip entries without weight that the rounding may end on
+                while (weight(candidateWeights, next) == 0 && next > 0)
+                    next--;
+            } else {
+                // every point lies on a centroid already
+                next = pointAt(candidateWeights, rand.nextInt(size()));
+            }
+            System.arraycopy(candidates, next * dimension, centroids, c * dimension, dimension);
         }
     }
 
+    private static boolean isSorted(double[] values) {
+        for (int i = 1; i < values.length; i++)
+            if (values[i - 1] > values[i])
+                return false;
+        return true;
+    }
+
+    // # of points, counting each entry weight times
+    private int size() {
+        if (weights == null)
+            return n;
+        int size = 0;
+        for (int weight : weights)
+            size += weight;
+        return size;
+    }
+
+    // Entry that holds the rank-th point when every entry is repeated weight times
+    private static int pointAt(int[] weights, int rank) {
+        if (weights == null)
+            return rank;
+        int i = 0;
+        while (rank >= weights[i])
+            rank -= weights[i++];
+        return i;
+    }
+
+    private int weight(int i) {
+        return weight(weights, i);
+    }
+
+    private static int weight(int[] weights, int i) {
+        return weights == null ? 1 : weights[i];
+    }
+
     // Main method to run the K-Means clustering algorithm
     private void runKMeans() {
-        double[][] oldCentroids = new double[k][points[0].length];
-        int[] labels = new int[points.length];
-        int iterations = 0;
+        int chunks = (n + CHUNK - 1) / CHUNK;
+        double[][] partialSums = new double[chunks][k * dimension];
+        long[][] partialCounts = new long[chunks][k];
+        iterations = 0;
 
         while (iterations < maxIterations) {
-            // Save previous centroids
-            for (int i = 0; i < k; i++) {
-                oldCentroids[i] = centroids[i].clone();
-            }
-
-            // Assign labels based on the closest centroid
-            for (int i = 0; i < points.length; i++) {
-                labels[i] = getClosestCentroid(points[i]);
-            }
+            double[] oldCentroids = centroids.clone();
+
+            // Assign labels and sum up every chunk on its own
+            forEachChunk((from, to) -> {
+                int chunk = from / CHUNK;
+                double[] sums = partialSums[chunk];
+                long[] counts = partialCounts[chunk];
+                Arrays.fill(sums, 0);
+                Arrays.fill(counts, 0);
+                for (int i = from; i < to; i++) {
+                    int label = getClosestCentroid(i);
+                    labels[i] = label;
+                    int weight = weight(i);
+                    counts[label] += weight;
+                    for (int j = 0; j < dimension; j++)
+                        sums[label * dimension + j] += weight * points[i * dimension + j];
+                }
+            });
 
-            // Update centroids based on new labels
-            updateCentroids(labels);
+            // Update centroids from the partial sums, merged in chunk order
+            updateCentroids(partialSums, partialCounts);
+            iterations++;
 
             // Check for convergence
-            if (hasConverged(oldCentroids, centroids)) {
+            if (useEpsilon && hasConverged(oldCentroids, centroids)) {
                 break;
             }
-
-            iterations++;
         }
     }
 
+    // Runs chunk over fixed ranges of CHUNK points
+    private void forEachChunk(Parallel.Band chunk) {
+        int chunks = (n + CHUNK - 1) / CHUNK;
+        parallel.forEachBand(chunks, 1, (from, to) -> {
+            for (int c = from; c < to; c++)
+                chunk.run(c * CHUNK, Math.min(n, (c + 1) * CHUNK));
+        });
+    }
+
     // Helper method to find the closest centroid to a point
-    private int getClosestCentroid(double[] point) {
+    private int getClosestCentroid(int point) {
         double minDist = Double.MAX_VALUE;
         int label = 0;
 
         for (int i = 0; i < k; i++) {
-            double dist = euclideanDistance(point, centroids[i]);
+            double dist = squaredDistance(point, i);
             if (dist < minDist) {
                 minDist = dist;
                 label = i;
@@ -77,69 +224,136 @@ public class KMeans {
         return label;
     }
 
-    // Helper method to update centroids
-    private void updateCentroids(int[] labels) {
-        int[] counts = new int[k];
-        double[][] newCentroids = new double[k][points[0].length];
-
-        for (int i = 0; i < points.length; i++) {
-            int label = labels[i];
-            counts[label]++;
-            for (int j = 0; j < points[i].length; j++) {
-                newCentroids[label][j] += points[i][j];
-            }
+    // Helper method to update centroids; empty clusters keep their centroid
+    private void updateCentroids(double[][] partialSums, long[][] partialCounts) {
+        double[] sums = new double[k * dimension];
+        long[] counts = new long[k];
+        for (int c = 0; c < partialSums.length; c++) {
+            for (int i = 0; i < k * dimension; i++)
+                sums[i] += partialSums[c][i];
+            for (int i = 0; i < k; i++)
+                counts[i] += partialCounts[c][i];
         }
 
         for (int i = 0; i < k; i++) {
             if (counts[i] != 0) {
-                for (int j = 0; j < newCentroids[i].length; j++) {
-                    newCentroids[i][j] /= counts[i];
+                for (int j = 0; j < dimension; j++) {
+                    centroids[i * dimension + j] = sums[i * dimension + j] / counts[i];
                 }
             }
         }
-
-        centroids = newCentroids;
     }
 
     // Helper method to check for convergence
-    private boolean hasConverged(double[][] oldCentroids, double[][] newCentroids) {
+    private boolean hasConverged(double[] oldCentroids, double[] newCentroids) {
         for (int i = 0; i < k; i++) {
-            if (euclideanDistance(oldCentroids[i], newCentroids[i]) > epsilon) {
+            double sum = 0.0;
+            for (int j = 0; j < dimension; j++) {
+                double difference = oldCentroids[i * dimension + j] - newCentroids[i * dimension + j];
+                sum += difference * difference;
+            }
+            if (Math.sqrt(sum) > epsilon) {
                 return false;
             }
         }
         return true;
     }
 
-    // Helper method to calculate Euclidean distance
-    private double euclideanDistance(double[] point1, double[] point2) {
+    // Helper method to calculate the squared Euclidean distance of a point to a centroid
+    private double squaredDistance(int point, int centroid) {
+        return squaredDistance(points, point, centroid);
+    }
+
+    private double squaredDistance(double[] points, int point, int centroid) {
         double sum = 0.0;
-        for (int i = 0; i < point1.length; i++) {
-            sum += Math.pow(point1[i] - point2[i], 2);
+        int p = point * dimension;
+        int c = centroid * dimension;
+        for (int j = 0; j < dimension; j++) {
+            double difference = points[p + j] - centroids[c + j];
+            sum += difference * difference;
         }
-        return Math.sqrt(sum);
+        return sum;
     }
 
     // Method to get the centroids after running K-Means
     public double[][] getCentroids() {
-        return centroids;
+        double[][] result = new double[k][dimension];
+        for (int i = 0; i < k; i++)
+            System.arraycopy(centroids, i * dimension, result[i], 0, dimension);
+        return result;
+    }
+
+    /**
+     * @return index of the closest centroid of every point (or histogram bin)
+     */
+    public int[] getLabels() {
+        return labels;
+    }
+
+    /**
+     * @return # of iterations run
+     */
+    public int getIterations() {
+        return iterations;
     }
 
     // Builder pattern for constructing KMeans objects
     public static class Builder {
 
         private int k;
-        private double[][] points;
+        private int dimension;
+        private double[] points;
+        private int[] weights;
+        private long seed = new Random().nextLong();
         private int maxIterations = 100;
         private double epsilon = 1e-4;
         private boolean useEpsilon = true;
-        private boolean useKMeansPlusPlus = false; // Add this field
+        private boolean useKMeansPlusPlus = false;
+        private Parallel parallel = Parallel.getDefault();
 
         public Builder(int k, double[][] points) {
             this.k = k;
+            this.dimension = points[0].length;
+            this.points = new double[points.length * dimension];
+            for (int i = 0; i < points.length; i++)
+                System.arraycopy(points[i], 0, this.points, i * dimension, dimension);
+        }
+
+        /**
+         * Points stored flat in row-major order, dimension coordinates each.
+         * The array is used as is, not copied.
+         */
+        public Builder(int k, double[] points, int dimension) {
+            if (dimension < 1 || points.length % dimension != 0)
+                throw new IllegalArgumentException("Points must hold a whole number of points");
+            this.k = k;
+            this.dimension = dimension;
             this.points = points;
         }
 
+        /**
+         * Weighted 1D input: counts[i] points with the value values[i].
+         */
+        public Builder(int k, double[] values, int[] counts) {
+            if (values.length != counts.length)
+                throw new IllegalArgumentException("Values and counts must have the same length");
+            for (int count : counts)
+                if (count < 0)
+                    throw new IllegalArgumentException("Counts must not be negative");
+            this.k = k;
+            this.dimension = 1;
+            this.points = values;
+            this.weights = counts;
+        }
+
+        /**
+         * Seed of the initial centroids, for reproducible results.
+         */
+        public Builder seed(long seed) {
+            this.seed = seed;
+            return this;
+        }
+
         public Builder iterations(int maxIterations) {
             this.maxIterations = maxIterations;
             return this;
@@ -155,33 +369,19 @@ public class KMeans {
             return this;
         }
 
-        // Add this method to support pp(true)
+        // Initialize the centroids with k-means++
         public Builder pp(boolean useKMeansPlusPlus) {
             this.useKMeansPlusPlus = useKMeansPlusPlus;
             return this;
         }
 
+        public Builder parallel(Parallel parallel) {
+            this.parallel = parallel;
+            return this;
+        }
+
         public KMeans build() {
             return new KMeans(this);
         }
     }
-
-    // For testing purposes (Optional)
-    public static void main(String[] args) {
-        double[][] points = {
-                {1.0, 2.0},
-                {2.0, 3.0},
-                {4.0, 5.0},
-                {7.0, 8.0},
-                {8.0, 9.0}
-        };
-
-        KMeans kMeans = new KMeans.Builder(2, points)
-                .iterations(10)
-                .epsilon(1e-4)
-                .useEpsilon(true)
-                .build();
-
-        System.out.println("Centroids: " + Arrays.deepToString(kMeans.getCentroids()));
-    }
 }
@@ -1,5 +1,8 @@
 package seproject.model.edgedetector.util;
 
+import seproject.model.edgedetector.image.BytePlane;
+import seproject.model.edgedetector.image.ShortPlane;
+
 public class NonMaximumSuppression {
 
     public enum EdgeDirection {
@@ -9,14 +12,58 @@ public class NonMaximumSuppression {
         DIAG_RIGHT_UP;
 
         public static final double UP = Math.PI / 2.0;
-        public static final double UP_TILT = Math.PI * 77.5 / 180.0;
+        public static final double UP_TILT = Math.PI * 67.5 / 180.0;
         public static final double FLAT_TILT = Math.PI * 22.5 / 180.0;
         public static final double FLAT = 0;
 
+        // tan(22.5) and tan(67.5) in 16.16 fixed point
+        private static final long TAN_FLAT_TILT = 27146;
+        private static final long TAN_UP_TILT = 158218;
+
+        private static final EdgeDirection[] VALUES = values();
+
+        /**
+         * Quantizes the direction of (G_x, G_y) without trigonometry:
+         * |G_y| / |G_x| is compared with tan(22.5) and tan(67.5) in integers.
+         */
+        public static EdgeDirection getDirection(int G_x, int G_y) {
+            long x = Math.abs((long) G_x);
+            long y = Math.abs((long) G_y) << 16;
+            if (y <= TAN_FLAT_TILT * x)
+                return EdgeDirection.HORIZONTAL;
+            if (y >= TAN_UP_TILT * x)
+                return EdgeDirection.VERTICAL;
+            return ((G_x ^ G_y) >= 0) ? EdgeDirection.DIAG_RIGHT_UP : EdgeDirection.DIAG_LEFT_UP;
+        }
+
         public static EdgeDirection getDirection(double G_x, double G_y) {
             return (G_x != 0) ? getDirection(Math.atan(G_y / G_x)) : ((G_y == 0) ? EdgeDirection.HORIZONTAL : EdgeDirection.VERTICAL);
         }
 
+        /**
+         * @return the direction with the given ordinal, as stored in a direction plane
+         */
+        public static EdgeDirection of(int ordinal) {
+            return VALUES[ordinal];
+        }
+
+        /**
+         * Quantizes the direction of every pixel of a signed gradient.
+         *
+         * @param x signed gradient in x direction
+         * @param y signed gradient in y direction, same size as x
+         * @return EdgeDirection ordinal of every pixel
+         */
+        public static BytePlane getDirections(ShortPlane x, ShortPlane y) {
+            int rows = x.getRows();
+            int columns = x.getColumns();
+            BytePlane directions = new BytePlane(rows, columns);
+            for (int i = 0; i < rows; i++)
+                for (int j = 0; j < columns; j++)
+                    directions.set(i, j, getDirection(x.get(i, j), y.get(i, j)).ordinal());
+            return directions;
+        }
+
         public static EdgeDirection getDirection(double radians) {
             double radians_abs = Math.abs(radians);
             if (radians_abs >= UP_TILT && radians_abs <= UP)
@@ -67,6 +114,94 @@ public class NonMaximumSuppression {
         return !(suppress1 || suppress2);
     }
 
+    /**
+     * เหมือนกับ nonMaximumSuppression(int[][], ...) แต่ทำงานบน ShortPlane
+     *
+     * @param mag          ขนาดของการเปลี่ยนแปลงความเข้มของพิกเซล
+     * @param angle        ทิศทางของขอบ
+     * @param i            ตำแหน่งแถวของพิกเซล
+     * @param j            ตำแหน่งคอลัมน์ของพิกเซล
+     * @param threshold    ค่าความเข้มที่ใช้เป็นเกณฑ์ในการกำหนดขอบ
+     * @return             คืนค่า true ถ้าพิกเซลเป็นขอบ
+     */
+    public static boolean nonMaximumSuppression(ShortPlane mag, EdgeDirection angle, int i, int j, int threshold) {
+        int value = mag.get(i, j);
+        if (value <= threshold) {
+            return false;
+        }
+
+        int[] indices = indicesMaxSuppresion(angle, i, j);
+        int rows = mag.getRows();
+        int columns = mag.getColumns();
+
+        boolean suppress1 = checkInBounds(indices[0], indices[1], rows, columns) && mag.get(indices[0], indices[1]) > value;
+        boolean suppress2 = checkInBounds(indices[2], indices[3], rows, columns) && mag.get(indices[2], indices[3]) > value;
+
+        return !(suppress1 || suppress2);
+    }
+
+    /**
+     * Non-maximum suppression of a whole magnitude plane, in place.
+     * <P> A pixel is kept if its magnitude is above threshold and not smaller
+     * than its two neighbours across the edge; otherwise it is set to 0.
+     * Neighbours are always compared by their original magnitude: the rows
+     * i - 1 and i are kept in two rolling buffers while row i is rewritten,
+     * so nothing is allocated per pixel.
+     *
+     * @param mag          gradient magnitude, suppressed in place
+     * @param direction    EdgeDirection ordinal of every pixel
+     * @param threshold    magnitude a pixel must exceed to be kept
+     */
+    public static void suppress(ShortPlane mag, BytePlane direction, int threshold) {
+        int rows = mag.getRows();
+        int columns = mag.getColumns();
+        short[] data = mag.getData();
+        short[] previous = new short[columns];
+        short[] current = new short[columns];
+
+        for (int i = 0; i < rows; i++) {
+            Parallel.checkInterrupted();
+            short[] swap = previous;
+            previous = current;
+            current = swap;
+            int row = mag.index(i, 0);
+            System.arraycopy(data, row, current, 0, columns);
+            int below = i + 1 < rows ? mag.index(i + 1, 0) : -1;
+
+            for (int j = 0; j < columns; j++) {
+                int value = current[j];
+                if (value <= threshold) {
+                    data[row + j] = 0;
+                    continue;
+                }
+
+                // offsets of the two neighbours across the edge: (i - 1, j - dj) and (i + 1, j + dj), or (i, j -+ 1)
+                int dj;
+                switch (EdgeDirection.of(direction.get(i, j))) {
+                    case VERTICAL:
+                        dj = 0;
+                        break;
+                    case HORIZONTAL:
+                        if ((j > 0 && current[j - 1] > value) || (j + 1 < columns && current[j + 1] > value))
+                            data[row + j] = 0;
+                        continue;
+                    case DIAG_LEFT_UP:
+                        dj = 1;
+                        break;
+                    default: // DIAG_RIGHT_UP
+                        dj = -1;
+                        break;
+                }
+                int up = j - dj;
+                int down = j + dj;
+                boolean suppressUp = i > 0 && up >= 0 && up < columns && previous[up] > value;
+                boolean suppressDown = below >= 0 && down >= 0 && down < columns && data[below + down] > value;
+                if (suppressUp || suppressDown)
+                    data[row + j] = 0;
+            }
+        }
+    }
+
     /**
      * คำนวณตำแหน่งของพิกเซล 2 จุดที่ต้องใช้ในการตรวจสอบการกดขอบ
      * @param d ทิศทางของขอบ
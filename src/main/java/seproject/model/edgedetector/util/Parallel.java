@@ -0,0 +1,168 @@
+package seproject.model.edgedetector.util;
+
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Splits row-oriented image work into bands and runs them on a ForkJoinPool.
+ * <P> Every band is processed by exactly the same code as a sequential run, so
+ * the result does not depend on the parallelism as long as bands write
+ * disjoint rows.
+ * <P> Work is cancellable: once the calling thread is interrupted, no further
+ * band starts and forEachBand throws a CancellationException. A sequential
+ * run is cut into bands as well, so it stops part way too.
+ */
+public class Parallel {
+
+    /**
+     * Work on the rows [from, to) of an image.
+     */
+    @FunctionalInterface
+    public interface Band {
+        void run(int from, int to);
+    }
+
+    // Bands smaller than this are not worth a task
+    public static final int MIN_BAND_ROWS = 16;
+
+    // Tasks per worker, so uneven bands still balance out
+    private static final int TASKS_PER_THREAD = 4;
+
+    private static final Parallel SEQUENTIAL = new Parallel(null);
+    private static volatile Parallel defaultInstance = new Parallel(ForkJoinPool.commonPool());
+
+    // One pool per parallelism level, shared by every caller and kept for the life of the JVM
+    private static final Map<Integer, Parallel> POOLS = new ConcurrentHashMap<>();
+
+    private final ForkJoinPool pool;    // null when running sequentially
+
+    private Parallel(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * @return an instance that runs every band on the calling thread
+     */
+    public static Parallel sequential() {
+        return SEQUENTIAL;
+    }
+
+    /**
+     * @return an instance backed by the common ForkJoinPool
+     */
+    public static Parallel common() {
+        return new Parallel(ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Repeated calls with the same parallelism return the same instance, so
+     * building detectors in a loop does not start new threads. The pool's
+     * workers are daemon threads and end when they have been idle for a while.
+     *
+     * @param parallelism # of worker threads
+     * @return an instance backed by a pool of the given size
+     */
+    public static Parallel withParallelism(int parallelism) {
+        if (parallelism < 1)
+            throw new IllegalArgumentException("Parallelism must be at least 1");
+        if (parallelism == 1)
+            return SEQUENTIAL;
+        return POOLS.computeIfAbsent(parallelism, size -> new Parallel(new ForkJoinPool(size)));
+    }
+
+    /**
+     * @return the instance used when no other one is given
+     */
+    public static Parallel getDefault() {
+        return defaultInstance;
+    }
+
+    /**
+     * Sets the instance used when no other one is given.
+     */
+    public static void setDefault(Parallel parallel) {
+        if (parallel == null)
+            throw new IllegalArgumentException("Parallel must not be null");
+        defaultInstance = parallel;
+    }
+
+    /**
+     * @return # of threads bands may run on
+     */
+    public int getParallelism() {
+        return pool == null ? 1 : pool.getParallelism();
+    }
+
+    /**
+     * Runs band over [0, rows), split into bands of at least minBandRows rows.
+     * Returns once every band has finished.
+     *
+     * @throws CancellationException if the calling thread is interrupted
+     */
+    public void forEachBand(int rows, int minBandRows, Band band) {
+        int parallelism = getParallelism();
+        int grain = Math.max(Math.max(1, minBandRows), rows / (parallelism * TASKS_PER_THREAD));
+        Thread caller = Thread.currentThread();
+        if (pool == null || rows <= grain) {
+            for (int from = 0; from < rows; from += grain) {
+                checkInterrupted(caller);
+                band.run(from, Math.min(rows, from + grain));
+            }
+            return;
+        }
+        pool.invoke(new BandTask(band, 0, rows, grain, caller));
+    }
+
+    /**
+     * Runs band over [0, rows) with the default band size.
+     */
+    public void forEachBand(int rows, Band band) {
+        forEachBand(rows, MIN_BAND_ROWS, band);
+    }
+
+    /**
+     * Lets long sequential loops stop once the current thread is interrupted.
+     * The interrupt flag stays set.
+     *
+     * @throws CancellationException if the current thread is interrupted
+     */
+    public static void checkInterrupted() {
+        checkInterrupted(Thread.currentThread());
+    }
+
+    // Bands run on pool threads, so they look at the thread that asked for the work
+    private static void checkInterrupted(Thread caller) {
+        if (caller.isInterrupted())
+            throw new CancellationException("Interrupted");
+    }
+
+    private static class BandTask extends RecursiveAction {
+        private final Band band;
+        private final int from;
+        private final int to;
+        private final int grain;
+        private final Thread caller;
+
+        BandTask(Band band, int from, int to, int grain, Thread caller) {
+            this.band = band;
+            this.from = from;
+            this.to = to;
+            this.grain = grain;
+            this.caller = caller;
+        }
+
+        @Override
+        protected void compute() {
+            checkInterrupted(caller);
+            if (to - from <= grain) {
+                band.run(from, to);
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new BandTask(band, from, middle, grain, caller), new BandTask(band, middle, to, grain, caller));
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package seproject.model.edgedetector.util;
+
+/**
+ * Inner loops shared by the convolution and gradient code, working on one
+ * image row at a time.
+ * <P> Two backends exist: a scalar one and one built on the incubating Vector
+ * API ({@code jdk.incubator.vector}). The vector backend is used when the module
+ * is available at runtime (e.g. {@code --add-modules jdk.incubator.vector}) and
+ * the system property {@code seproject.vector} is not "false". Both backends
+ * perform the same IEEE operations in the same order per element, so their
+ * results are identical bit for bit.
+ */
+public abstract class RowKernels {
+
+    private static final RowKernels SCALAR = new ScalarRowKernels();
+    private static final RowKernels DEFAULT = loadDefault();
+
+    /**
+     * @return the fastest backend available in this JVM
+     */
+    public static RowKernels getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * @return the scalar backend
+     */
+    public static RowKernels scalar() {
+        return SCALAR;
+    }
+
+    /**
+     * @return the vector backend, or null if jdk.incubator.vector is not available
+     */
+    public static RowKernels vector() {
+        try {
+            return (RowKernels) Class.forName("seproject.model.edgedetector.util.VectorRowKernels")
+                    .getDeclaredConstructor().newInstance();
+        } catch (Throwable e) {
+            return null;
+        }
+    }
+
+    private static RowKernels loadDefault() {
+        if ("false".equalsIgnoreCase(System.getProperty("seproject.vector")))
+            return SCALAR;
+        RowKernels vector = vector();
+        return vector != null ? vector : SCALAR;
+    }
+
+    /**
+     * @return name of the backend
+     */
+    public abstract String getName();
+
+    /**
+     * dst[dstOffset + j] = src[srcOffset + j] & 0xFF for j in [0, length)
+     */
+    public void toDouble(byte[] src, int srcOffset, double[] dst, int dstOffset, int length) {
+        for (int j = 0; j < length; j++)
+            dst[dstOffset + j] = src[srcOffset + j] & 0xFF;
+    }
+
+    /**
+     * acc[j] += weight * src[srcOffset + j] for j in [0, length)
+     */
+    public abstract void multiplyAdd(double weight, double[] src, int srcOffset, double[] acc, int length);
+
+    /**
+     * Rounds values towards zero and clamps them to [0, 255] into dst.
+     * Values is used as scratch space.
+     */
+    public abstract void clampToBytes(double[] values, byte[] dst, int dstOffset, int length);
+
+    /**
+     * Rounds values towards zero and clamps them to the short range into dst.
+     * Values is used as scratch space.
+     */
+    public abstract void clampToShorts(double[] values, short[] dst, int dstOffset, int length);
+
+    /**
+     * dst[j] = sqrt(x[j]^2 + y[j]^2) for j in [0, length).
+     * <P> ImageGradient computes its L2 magnitudes with this, one row at a
+     * time. For integer inputs the truncated result equals
+     * (int) Math.sqrt(x * x + y * y).
+     */
+    public abstract void hypot(double[] x, double[] y, double[] dst, int length);
+}
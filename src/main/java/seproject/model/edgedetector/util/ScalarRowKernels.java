@@ -0,0 +1,40 @@
+package seproject.model.edgedetector.util;
+
+/**
+ * Plain Java implementation of the row kernels.
+ */
+class ScalarRowKernels extends RowKernels {
+
+    @Override
+    public String getName() {
+        return "scalar";
+    }
+
+    @Override
+    public void multiplyAdd(double weight, double[] src, int srcOffset, double[] acc, int length) {
+        for (int j = 0; j < length; j++)
+            acc[j] += weight * src[srcOffset + j];
+    }
+
+    @Override
+    public void clampToBytes(double[] values, byte[] dst, int dstOffset, int length) {
+        for (int j = 0; j < length; j++) {
+            double value = Math.min(Math.max(values[j], 0), 255);
+            dst[dstOffset + j] = (byte) (int) value;
+        }
+    }
+
+    @Override
+    public void clampToShorts(double[] values, short[] dst, int dstOffset, int length) {
+        for (int j = 0; j < length; j++) {
+            double value = Math.min(Math.max(values[j], Short.MIN_VALUE), Short.MAX_VALUE);
+            dst[dstOffset + j] = (short) (int) value;
+        }
+    }
+
+    @Override
+    public void hypot(double[] x, double[] y, double[] dst, int length) {
+        for (int j = 0; j < length; j++)
+            dst[j] = Math.sqrt(x[j] * x[j] + y[j] * y[j]);
+    }
+}
@@ -1,5 +1,8 @@
 package seproject.model.edgedetector.util;
 
+import seproject.model.edgedetector.image.BytePlane;
+import seproject.model.edgedetector.image.ShortPlane;
+
 public class Statistics {
 
     /**
@@ -32,6 +35,24 @@ public class Statistics {
         return mean / (double) (image.length * image[0].length);
     }
 
+    /**
+     * Calculates mean pixel intensity
+     * @param image
+     * @return
+     */
+    public static double calcMean(BytePlane image) {
+        return ImageStatistics.of(image, false, Parallel.getDefault()).getMean();
+    }
+
+    /**
+     * Calculates mean pixel intensity
+     * @param image
+     * @return
+     */
+    public static double calcMean(ShortPlane image) {
+        return ImageStatistics.of(image, false, Parallel.getDefault()).getMean();
+    }
+
     /**
      * Calculates standard deviation of pixel intensity (uncorrected sample std. dev.)
      * @param image
@@ -72,5 +93,23 @@ public class Statistics {
         return Math.sqrt(sigma / (double) (image.length * image[0].length - 1));
     }
 
+    /**
+     * Calculates standard deviation of pixel intensity (uncorrected sample std. dev.)
+     * in the same pass as the mean
+     * @param image
+     * @return
+     */
+    public static double calcStdDev(BytePlane image) {
+        return Math.sqrt(ImageStatistics.of(image, false, Parallel.getDefault()).getSampleVariance());
+    }
 
+    /**
+     * Calculates standard deviation of pixel intensity (uncorrected sample std. dev.)
+     * in the same pass as the mean
+     * @param image
+     * @return
+     */
+    public static double calcStdDev(ShortPlane image) {
+        return Math.sqrt(ImageStatistics.of(image, false, Parallel.getDefault()).getSampleVariance());
+    }
 }
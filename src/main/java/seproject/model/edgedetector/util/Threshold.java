@@ -1,10 +1,20 @@
 package seproject.model.edgedetector.util;
 
 import java.awt.image.BufferedImage;
-import java.awt.image.WritableRaster;
+import java.awt.image.DataBufferByte;
+import java.awt.image.Raster;
+import java.util.Arrays;
+
+import seproject.model.edgedetector.image.BytePlane;
+import seproject.model.edgedetector.image.EdgeMask;
+import seproject.model.edgedetector.image.ShortPlane;
 
 public class Threshold {
 
+    // Sample values of the binary outputs
+    private static final byte BLACK = 0;
+    private static final byte WHITE = (byte) 255;
+
     /**
      * Calculates threshold as the mean of the |G| matrix for edge detection algorithms.
      * @param magnitude the magnitude of the gradient for each pixel in the image
@@ -14,6 +24,76 @@ public class Threshold {
         return (int) Statistics.calcMean(magnitude);
     }
 
+    /**
+     * Calculates threshold as the mean of the |G| plane for edge detection algorithms.
+     * @param magnitude the magnitude of the gradient for each pixel in the image
+     * @return the calculated threshold based on the mean value of the magnitudes
+     */
+    public static int calcThresholdEdges(ShortPlane magnitude) {
+        return (int) Statistics.calcMean(magnitude);
+    }
+
+    /**
+     * Calculates threshold as the mean of an 8-bit response plane.
+     * @param response the filter response for each pixel in the image
+     * @return the calculated threshold based on the mean value of the responses
+     */
+    public static int calcThresholdEdges(BytePlane response) {
+        return (int) Statistics.calcMean(response);
+    }
+
+    /**
+     * Calculates a low / high threshold pair with the given strategy, from a
+     * single histogram pass over the magnitude plane.
+     * <P> A magnitude of 0 is never an edge, so both thresholds are at least
+     * 1. A flat plane has no edges at all: its thresholds lie above its only
+     * value, where any strategy would put every pixel on an edge.
+     * @param magnitude the magnitude of the gradient for each pixel in the image
+     * @param strategy how to pick the thresholds from the histogram
+     * @return the selected thresholds
+     */
+    public static ThresholdStrategy.Thresholds calcThresholds(ShortPlane magnitude, ThresholdStrategy strategy) {
+        Histogram histogram = Histogram.of(magnitude);
+        if (histogram.getMin() == histogram.getMax()) {
+            int above = Math.max(1, histogram.getMax() + 1);
+            return new ThresholdStrategy.Thresholds(above, above);
+        }
+        ThresholdStrategy.Thresholds thresholds = strategy.select(histogram);
+        int low = Math.max(1, thresholds.getLow());
+        return new ThresholdStrategy.Thresholds(low, Math.max(low, thresholds.getHigh()));
+    }
+
+    /**
+     * Marks the pixels whose magnitude reaches the threshold.
+     * @param magnitude the magnitude of the gradient for each pixel in the image
+     * @param threshold the smallest magnitude of an edge pixel
+     * @return mask with the pixels where magnitude >= threshold
+     */
+    public static EdgeMask toEdgeMask(ShortPlane magnitude, int threshold) {
+        int rows = magnitude.getRows();
+        int columns = magnitude.getColumns();
+        EdgeMask mask = new EdgeMask(rows, columns);
+        short[] data = magnitude.getData();
+        long[] words = mask.getWords();
+        int wordsPerRow = mask.getWordsPerRow();
+
+        // every band packs whole rows, so no two bands share a word
+        Parallel.getDefault().forEachBand(rows, (from, to) -> {
+            for (int i = from; i < to; i++) {
+                int index = magnitude.index(i, 0);
+                for (int w = 0; w < wordsPerRow; w++) {
+                    long word = 0;
+                    int end = Math.min(64, columns - (w << 6));
+                    for (int b = 0; b < end; b++)
+                        if (data[index + (w << 6) + b] >= threshold)
+                            word |= 1L << b;
+                    words[i * wordsPerRow + w] = word;
+                }
+            }
+        });
+        return mask;
+    }
+
     /**
      * Returns BufferedImage where color at (i, j) is black if pixel intensity >
      * threshold; white otherwise.
@@ -26,17 +106,15 @@ public class Threshold {
         int width = pixels[0].length;
 
         BufferedImage thresholdedImage = new BufferedImage(width, height, BufferedImage.TYPE_BYTE_GRAY);
-        WritableRaster raster = thresholdedImage.getRaster();
+        byte[] out = getData(thresholdedImage);
 
-        int[] black = {0, 0, 0};
-        int[] white = {255, 255, 255};
-
-        // Cache-efficient for both BufferedImage and int[][]
-        for (int row = 0; row < height; row++) {
-            for (int col = 0; col < width; col++) {
-                raster.setPixel(col, row, pixels[row][col] > threshold ? white : black);
+        Parallel.getDefault().forEachBand(height, (from, to) -> {
+            for (int row = from; row < to; row++) {
+                int index = row * width;
+                for (int col = 0; col < width; col++)
+                    out[index + col] = pixels[row][col] > threshold ? WHITE : BLACK;
             }
-        }
+        });
         return thresholdedImage;
     }
 
@@ -46,22 +124,7 @@ public class Threshold {
      * @return a BufferedImage with white for true (edge) and black for false (non-edge)
      */
     public static BufferedImage applyThreshold(boolean[][] pixels) {
-        int height = pixels.length;
-        int width = pixels[0].length;
-
-        BufferedImage thresholdedImage = new BufferedImage(width, height, BufferedImage.TYPE_BYTE_GRAY);
-        WritableRaster raster = thresholdedImage.getRaster();
-
-        int[] black = {0, 0, 0};
-        int[] white = {255, 255, 255};
-
-        // Cache-efficient for both BufferedImage and int[][]
-        for (int row = 0; row < height; row++) {
-            for (int col = 0; col < width; col++) {
-                raster.setPixel(col, row, pixels[row][col] ? white : black);
-            }
-        }
-        return thresholdedImage;
+        return binary(pixels, WHITE, BLACK);
     }
 
     /**
@@ -70,21 +133,60 @@ public class Threshold {
      * @return a BufferedImage with black for true (edge) and white for false (non-edge)
      */
     public static BufferedImage applyThresholdReversed(boolean[][] pixels) {
+        return binary(pixels, BLACK, WHITE);
+    }
+
+    /**
+     * Applies a threshold to the image based on an edge mask.
+     * @param mask the edge pixels
+     * @return a BufferedImage with white for edges and black for non-edges
+     */
+    public static BufferedImage applyThreshold(EdgeMask mask) {
+        return binary(mask, WHITE, BLACK);
+    }
+
+    /**
+     * Applies a threshold to the image based on an edge mask and reverses the pixel values.
+     * @param mask the edge pixels
+     * @return a BufferedImage with black for edges and white for non-edges
+     */
+    public static BufferedImage applyThresholdReversed(EdgeMask mask) {
+        return binary(mask, BLACK, WHITE);
+    }
+
+    // TYPE_BYTE_GRAY image with edge on the pixels of mask, background elsewhere
+    private static BufferedImage binary(EdgeMask mask, byte edge, byte background) {
+        int height = mask.getRows();
+        int width = mask.getColumns();
+
+        BufferedImage thresholdedImage = new BufferedImage(width, height, BufferedImage.TYPE_BYTE_GRAY);
+        byte[] out = getData(thresholdedImage);
+
+        Parallel.getDefault().forEachBand(height, (from, to) -> {
+            Arrays.fill(out, from * width, to * width, background);
+            for (int row = from; row < to; row++)
+                for (int col = mask.nextSetBit(row, 0); col >= 0; col = mask.nextSetBit(row, col + 1))
+                    out[row * width + col] = edge;
+        });
+        return thresholdedImage;
+    }
+
+    // TYPE_BYTE_GRAY image with edge where pixels is true, background elsewhere
+    private static BufferedImage binary(boolean[][] pixels, byte edge, byte background) {
         int height = pixels.length;
         int width = pixels[0].length;
 
         BufferedImage thresholdedImage = new BufferedImage(width, height, BufferedImage.TYPE_BYTE_GRAY);
-        WritableRaster raster = thresholdedImage.getRaster();
-
-        int[] black = {0, 0, 0};
-        int[] white = {255, 255, 255};
+        byte[] out = getData(thresholdedImage);
 
-        // Cache-efficient for both BufferedImage and int[][]
-        for (int row = 0; row < height; row++) {
-            for (int col = 0; col < width; col++) {
-                raster.setPixel(col, row, pixels[row][col] ? black : white);
+        Parallel.getDefault().forEachBand(height, (from, to) -> {
+            for (int row = from; row < to; row++) {
+                boolean[] edges = pixels[row];
+                int index = row * width;
+                for (int col = 0; col < width; col++)
+                    out[index + col] = edges[col] ? edge : background;
             }
-        }
+        });
         return thresholdedImage;
     }
 
@@ -99,24 +201,50 @@ public class Threshold {
         int width = weakEdges[0].length;
 
         BufferedImage thresholdedImage = new BufferedImage(width, height, BufferedImage.TYPE_3BYTE_BGR);
-        WritableRaster raster = thresholdedImage.getRaster();
-
-        int[] white = {255, 255, 255};
-        int[] blue = {0, 0, 255};
-        int[] green = {0, 255, 0};
-
-        // Cache-efficient for both BufferedImage and int[][]
-        for (int row = 0; row < height; row++) {
-            for (int col = 0; col < width; col++) {
-                if (strongEdges[row][col]) {
-                    raster.setPixel(col, row, green);
-                } else if (weakEdges[row][col]) {
-                    raster.setPixel(col, row, blue);
-                } else {
-                    raster.setPixel(col, row, white);
+        byte[] out = getData(thresholdedImage);
+
+        Parallel.getDefault().forEachBand(height, (from, to) -> {
+            for (int row = from; row < to; row++) {
+                int index = row * width * 3;
+                for (int col = 0; col < width; col++, index += 3) {
+                    if (strongEdges[row][col])
+                        putBGR(out, index, BLACK, WHITE, BLACK);
+                    else if (weakEdges[row][col])
+                        putBGR(out, index, WHITE, BLACK, BLACK);
+                    else
+                        putBGR(out, index, WHITE, WHITE, WHITE);
                 }
             }
-        }
+        });
+
+        return thresholdedImage;
+    }
+
+    /**
+     * Applies a threshold to distinguish weak and strong edges using different colors.
+     * @param weakEdges the weak edge pixels
+     * @param strongEdges the strong edge pixels, of the same size
+     * @return a BufferedImage with blue for weak edges and green for strong edges
+     */
+    public static BufferedImage applyThresholdWeakStrongCanny(EdgeMask weakEdges, EdgeMask strongEdges) {
+        int height = weakEdges.getRows();
+        int width = weakEdges.getColumns();
+        if (strongEdges.getRows() != height || strongEdges.getColumns() != width)
+            throw new IllegalArgumentException("Masks must have the same size");
+
+        BufferedImage thresholdedImage = new BufferedImage(width, height, BufferedImage.TYPE_3BYTE_BGR);
+        byte[] out = getData(thresholdedImage);
+
+        Parallel.getDefault().forEachBand(height, (from, to) -> {
+            Arrays.fill(out, from * width * 3, to * width * 3, WHITE);
+            for (int row = from; row < to; row++) {
+                // strong edges are painted last, over weak ones
+                for (int col = weakEdges.nextSetBit(row, 0); col >= 0; col = weakEdges.nextSetBit(row, col + 1))
+                    putBGR(out, (row * width + col) * 3, WHITE, BLACK, BLACK);
+                for (int col = strongEdges.nextSetBit(row, 0); col >= 0; col = strongEdges.nextSetBit(row, col + 1))
+                    putBGR(out, (row * width + col) * 3, BLACK, WHITE, BLACK);
+            }
+        });
 
         return thresholdedImage;
     }
@@ -132,36 +260,88 @@ public class Threshold {
         int width = edges[0].length;
 
         BufferedImage newImage = new BufferedImage(width, height, BufferedImage.TYPE_3BYTE_BGR);
-        WritableRaster raster_new = newImage.getRaster();
-        WritableRaster raster_old = originalImage.getRaster();
-
-        int[] white = {255, 255, 255};
-        int[] arr = new int[3];
-        int min;
-
-        for (int row = 0; row < height; row++) {
-            for (int col = 0; col < width; col++) {
-                if (!edges[row][col]) {
-                    raster_new.setPixel(col, row, white);
-                } else {
-                    // Get original pixel color
-                    raster_old.getPixel(col, row, arr);
-
-                    // Scale to max intensity
-                    min = 255;
-                    for (int i : arr) {
-                        if (i < min) {
-                            min = i;
-                        }
-                    }
-                    double scale = 255.0 / (255.0 - min);
-                    for (int i = 0; i < 3; i++) {
-                        arr[i] = 255 - (int) (scale * (255.0 - arr[i]));
-                    }
-                    raster_new.setPixel(col, row, arr);
+        byte[] out = getData(newImage);
+        Raster raster_old = originalImage.getRaster();
+        int bands = raster_old.getNumBands();
+
+        Parallel.getDefault().forEachBand(height, (from, to) -> {
+            // one row of original samples, bands interleaved
+            int[] samples = new int[width * bands];
+            int[] arr = new int[3];
+            for (int row = from; row < to; row++) {
+                raster_old.getPixels(0, row, width, 1, samples);
+                int index = row * width * 3;
+                for (int col = 0; col < width; col++, index += 3) {
+                    if (edges[row][col])
+                        putOriginal(out, index, samples, col, bands, arr);
+                    else
+                        putBGR(out, index, WHITE, WHITE, WHITE);
                 }
             }
-        }
+        });
         return newImage;
     }
+
+    /**
+     * Applies a threshold and keeps the original image color for edges.
+     * @param edges the edge pixels
+     * @param originalImage the original image to maintain its color
+     * @return a new BufferedImage with white for non-edges and original color for edges
+     */
+    public static BufferedImage applyThresholdOriginal(EdgeMask edges, BufferedImage originalImage) {
+        int height = edges.getRows();
+        int width = edges.getColumns();
+
+        BufferedImage newImage = new BufferedImage(width, height, BufferedImage.TYPE_3BYTE_BGR);
+        byte[] out = getData(newImage);
+        Raster raster_old = originalImage.getRaster();
+        int bands = raster_old.getNumBands();
+
+        Parallel.getDefault().forEachBand(height, (from, to) -> {
+            Arrays.fill(out, from * width * 3, to * width * 3, WHITE);
+            int[] samples = new int[width * bands];
+            int[] arr = new int[3];
+            for (int row = from; row < to; row++) {
+                // rows without edges keep their white fill
+                if (edges.nextSetBit(row, 0) < 0)
+                    continue;
+                raster_old.getPixels(0, row, width, 1, samples);
+                for (int col = edges.nextSetBit(row, 0); col >= 0; col = edges.nextSetBit(row, col + 1))
+                    putOriginal(out, (row * width + col) * 3, samples, col, bands, arr);
+            }
+        });
+        return newImage;
+    }
+
+    // Stores one pixel of a TYPE_3BYTE_BGR image, samples are in B, G, R order
+    private static void putBGR(byte[] out, int index, byte blue, byte green, byte red) {
+        out[index] = blue;
+        out[index + 1] = green;
+        out[index + 2] = red;
+    }
+
+    // Stores the original color of pixel col, scaled to max intensity; arr is scratch
+    private static void putOriginal(byte[] out, int index, int[] samples, int col, int bands, int[] arr) {
+        // Get original pixel color, gray images use their single band for all three
+        for (int i = 0; i < 3; i++)
+            arr[i] = samples[col * bands + (bands >= 3 ? i : 0)];
+
+        // Scale to max intensity
+        int min = 255;
+        for (int i : arr) {
+            if (i < min) {
+                min = i;
+            }
+        }
+        double scale = 255.0 / (255.0 - min);
+        for (int i = 0; i < 3; i++) {
+            arr[i] = 255 - (int) (scale * (255.0 - arr[i]));
+        }
+        putBGR(out, index, (byte) arr[2], (byte) arr[1], (byte) arr[0]);
+    }
+
+    // Backing array of a freshly created TYPE_BYTE_GRAY or TYPE_3BYTE_BGR image
+    private static byte[] getData(BufferedImage image) {
+        return ((DataBufferByte) image.getRaster().getDataBuffer()).getData();
+    }
 }
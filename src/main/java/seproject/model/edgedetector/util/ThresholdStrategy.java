@@ -0,0 +1,112 @@
+package seproject.model.edgedetector.util;
+
+import java.util.Arrays;
+
+/**
+ * Picks a low and a high threshold from the histogram of a magnitude plane.
+ * <P> Detectors with a single threshold use getHigh(); Canny uses both for
+ * hysteresis. Every strategy works on the histogram only, so selection is
+ * O(# of bins) after one O(# of pixels) pass.
+ */
+public interface ThresholdStrategy {
+
+    /**
+     * A low / high threshold pair.
+     */
+    final class Thresholds {
+        private final int low;
+        private final int high;
+
+        public Thresholds(int low, int high) {
+            this.low = low;
+            this.high = high;
+        }
+
+        public int getLow() {
+            return low;
+        }
+
+        public int getHigh() {
+            return high;
+        }
+
+        @Override
+        public String toString() {
+            return "Thresholds(low = " + low + ", high = " + high + ")";
+        }
+    }
+
+    Thresholds select(Histogram histogram);
+
+    /**
+     * Both thresholds are the mean magnitude.
+     */
+    static ThresholdStrategy mean() {
+        return histogram -> {
+            int mean = (int) histogram.mean();
+            return new Thresholds(mean, mean);
+        };
+    }
+
+    /**
+     * High threshold mean + k * sigma, low threshold the mean.
+     */
+    static ThresholdStrategy meanStdDev(double k) {
+        return histogram -> {
+            double mean = histogram.mean();
+            double sigma = Math.sqrt(histogram.variance());
+            return new Thresholds((int) mean, (int) (mean + k * sigma));
+        };
+    }
+
+    /**
+     * High threshold by Otsu's method, low threshold half of it.
+     */
+    static ThresholdStrategy otsu() {
+        return histogram -> {
+            int high = histogram.otsu();
+            return new Thresholds(high / 2, high);
+        };
+    }
+
+    /**
+     * MATLAB style: the high threshold leaves nonEdgeFraction of the pixels
+     * below it (e.g. 0.7), the low threshold is lowRatio times the high one
+     * (e.g. 0.4).
+     */
+    static ThresholdStrategy percentile(double nonEdgeFraction, double lowRatio) {
+        if (nonEdgeFraction < 0 || nonEdgeFraction >= 1 || lowRatio < 0 || lowRatio > 1)
+            throw new IllegalArgumentException("Invalid percentile parameters");
+        return histogram -> {
+            int high = histogram.percentile(nonEdgeFraction);
+            return new Thresholds((int) (lowRatio * high), high);
+        };
+    }
+
+    /**
+     * Three k-means clusters of the magnitudes: the middle centroid is the
+     * low, the upper centroid the high threshold.
+     */
+    static ThresholdStrategy kMeans(long seed) {
+        return histogram -> {
+            int bins = histogram.getMax() - histogram.getMin() + 1;
+            double[] values = new double[bins];
+            int[] counts = new int[bins];
+            for (int i = 0; i < bins; i++) {
+                values[i] = histogram.getMin() + i;
+                counts[i] = histogram.count(histogram.getMin() + i);
+            }
+
+            double[][] centroids = new KMeans.Builder(3, values, counts)
+                    .seed(seed)
+                    .iterations(10)
+                    .epsilon(.01)
+                    .useEpsilon(true)
+                    .build()
+                    .getCentroids();
+            double[] sorted = {centroids[0][0], centroids[1][0], centroids[2][0]};
+            Arrays.sort(sorted);
+            return new Thresholds((int) sorted[1], (int) sorted[2]);
+        };
+    }
+}
@@ -0,0 +1,73 @@
+package seproject.model.edgedetector.util;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Row kernels on SIMD lanes using the incubating Vector API.
+ * <P> Only loaded through RowKernels.vector(), so the rest of the code runs
+ * without jdk.incubator.vector. Each lane does exactly what the scalar loop
+ * does for its element (no fused multiply-add), and the tail is handled by
+ * the scalar code.
+ */
+class VectorRowKernels extends RowKernels {
+
+    private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+
+    @Override
+    public String getName() {
+        return "vector (" + SPECIES.length() + " lanes)";
+    }
+
+    @Override
+    public void multiplyAdd(double weight, double[] src, int srcOffset, double[] acc, int length) {
+        int bound = SPECIES.loopBound(length);
+        int j = 0;
+        for (; j < bound; j += SPECIES.length()) {
+            DoubleVector s = DoubleVector.fromArray(SPECIES, src, srcOffset + j);
+            DoubleVector a = DoubleVector.fromArray(SPECIES, acc, j);
+            a.add(s.mul(weight)).intoArray(acc, j);
+        }
+        for (; j < length; j++)
+            acc[j] += weight * src[srcOffset + j];
+    }
+
+    @Override
+    public void clampToBytes(double[] values, byte[] dst, int dstOffset, int length) {
+        int bound = SPECIES.loopBound(length);
+        for (int j = 0; j < bound; j += SPECIES.length())
+            DoubleVector.fromArray(SPECIES, values, j).max(0).min(255).intoArray(values, j);
+        for (int j = 0; j < bound; j++)
+            dst[dstOffset + j] = (byte) (int) values[j];
+        for (int j = bound; j < length; j++) {
+            double value = Math.min(Math.max(values[j], 0), 255);
+            dst[dstOffset + j] = (byte) (int) value;
+        }
+    }
+
+    @Override
+    public void clampToShorts(double[] values, short[] dst, int dstOffset, int length) {
+        int bound = SPECIES.loopBound(length);
+        for (int j = 0; j < bound; j += SPECIES.length())
+            DoubleVector.fromArray(SPECIES, values, j).max(Short.MIN_VALUE).min(Short.MAX_VALUE).intoArray(values, j);
+        for (int j = 0; j < bound; j++)
+            dst[dstOffset + j] = (short) (int) values[j];
+        for (int j = bound; j < length; j++) {
+            double value = Math.min(Math.max(values[j], Short.MIN_VALUE), Short.MAX_VALUE);
+            dst[dstOffset + j] = (short) (int) value;
+        }
+    }
+
+    @Override
+    public void hypot(double[] x, double[] y, double[] dst, int length) {
+        int bound = SPECIES.loopBound(length);
+        int j = 0;
+        for (; j < bound; j += SPECIES.length()) {
+            DoubleVector vx = DoubleVector.fromArray(SPECIES, x, j);
+            DoubleVector vy = DoubleVector.fromArray(SPECIES, y, j);
+            vx.mul(vx).add(vy.mul(vy)).sqrt().intoArray(dst, j);
+        }
+        for (; j < length; j++)
+            dst[j] = Math.sqrt(x[j] * x[j] + y[j] * y[j]);
+    }
+}
@@ -0,0 +1,63 @@
+package seproject.model.edgedetector.detectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import seproject.model.edgedetector.image.BytePlane;
+import seproject.model.edgedetector.image.EdgeMask;
+import seproject.model.edgedetector.image.ShortPlane;
+import seproject.model.edgedetector.imagederivatives.GradientOperator;
+import seproject.model.edgedetector.pipeline.Pipeline;
+import seproject.model.edgedetector.pipeline.Stages;
+import seproject.model.edgedetector.util.Threshold;
+import seproject.model.edgedetector.util.ThresholdStrategy;
+
+class CannyEdgeDetectorTest {
+
+    private static final int ROWS = 120;
+    private static final int COLUMNS = 160;
+
+    @Test
+    void defaultDetectorFindsTheOutlineWithoutFlooding() {
+        EdgeMask edges = new CannyEdgeDetector().findEdgeMask(noisyDisc(new Random(3)));
+        int count = edges.cardinality();
+        // the outline of the disc is about 2 * pi * 40 = 250 pixels
+        assertTrue(count > 150, "too few edges: " + count);
+        assertTrue(count < ROWS * COLUMNS / 20, "too many edges: " + count);
+    }
+
+    @Test
+    void builderDefaultPicksKMeansThresholdsAfterSuppression() {
+        Pipeline pipeline = new Pipeline(noisyDisc(new Random(3)));
+        EdgeDetectionResult result = new CannyEdgeDetector.Builder().build().detect(pipeline);
+
+        ShortPlane suppressed = pipeline.get(Stages.suppressed(
+                Stages.gradient(Stages.SMOOTHED, GradientOperator.SOBEL, false, true), 0));
+        ThresholdStrategy.Thresholds expected = Threshold.calcThresholds(suppressed,
+                ThresholdStrategy.kMeans(CannyEdgeDetector.KMEANS_SEED));
+        assertEquals(expected.getLow(), result.getLowThreshold());
+        assertEquals(expected.getHigh(), result.getHighThreshold());
+
+        int count = result.getEdgeMask().cardinality();
+        assertTrue(result.getLowThreshold() > 0, "low threshold is 0");
+        assertTrue(count > 150 && count < ROWS * COLUMNS / 20, "edges: " + count);
+    }
+
+    // Bright disc of radius 40 on a dark background; thresholds 15 / 35 on the
+    // signed magnitudes turn its noise into thousands of edges
+    static BytePlane noisyDisc(Random random) {
+        BytePlane image = new BytePlane(ROWS, COLUMNS);
+        for (int i = 0; i < ROWS; i++)
+            for (int j = 0; j < COLUMNS; j++) {
+                int di = i - ROWS / 2;
+                int dj = j - COLUMNS / 2;
+                int value = di * di + dj * dj < 40 * 40 ? 180 : 60;
+                image.set(i, j, Math.max(0, Math.min(255, value + (int) (random.nextGaussian() * 16))));
+            }
+        return image;
+    }
+}
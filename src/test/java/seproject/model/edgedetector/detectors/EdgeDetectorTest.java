@@ -0,0 +1,67 @@
+package seproject.model.edgedetector.detectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+import seproject.model.edgedetector.image.BytePlane;
+import seproject.model.edgedetector.pipeline.Pipeline;
+import seproject.model.edgedetector.pipeline.Stage;
+import seproject.model.edgedetector.util.ThresholdStrategy;
+
+class EdgeDetectorTest {
+
+    // Automatic thresholds on a zero magnitude plane used to be 0 / 0, which
+    // marked every pixel as an edge
+    @Test
+    void flatImageHasNoEdges() {
+        EdgeDetector[] detectors = {
+                new CannyEdgeDetector(),
+                new CannyEdgeDetector.Builder().build(),
+                new CannyEdgeDetector.Builder().thresholdStrategy(ThresholdStrategy.otsu()).build(),
+                new CannyEdgeDetector.Builder().thresholdStrategy(ThresholdStrategy.percentile(0.7, 0.4)).build(),
+                new SobelEdgeDetector(),
+                new SobelEdgeDetector(ThresholdStrategy.otsu()),
+                new PrewittEdgeDetector(),
+                new RobertsCrossEdgeDetector(),
+                new GaussianEdgeDetector(),
+                new LaplacianEdgeDetector(),
+                new LaplacianEdgeDetector(ThresholdStrategy.kMeans(1))
+        };
+        for (int value : new int[] {0, 128, 255}) {
+            BytePlane image = new BytePlane(50, 50);
+            for (int i = 0; i < 50; i++)
+                for (int j = 0; j < 50; j++)
+                    image.set(i, j, value);
+            for (EdgeDetector detector : detectors)
+                assertEquals(0, detector.findEdgeMask(image).cardinality(),
+                        detector.getClass().getSimpleName() + " on gray value " + value);
+        }
+    }
+
+    // EdgeDetectionTask reports progress against this graph
+    @Test
+    void edgeStageGraphIsEveryStageDetectComputes() {
+        EdgeDetector[] detectors = {
+                new CannyEdgeDetector(),
+                new CannyEdgeDetector.Builder().thresholds(20, 50).minEdgeSize(0).build(),
+                new SobelEdgeDetector(),
+                new PrewittEdgeDetector(),
+                new RobertsCrossEdgeDetector(),
+                new GaussianEdgeDetector(),
+                new LaplacianEdgeDetector()
+        };
+        BytePlane image = CannyEdgeDetectorTest.noisyDisc(new Random(4));
+        for (EdgeDetector detector : detectors) {
+            Set<Stage<?>> computed = new HashSet<>();
+            detector.detect(new Pipeline(image, computed::add));
+            assertEquals(computed, detector.getEdgeStage().getGraph(), detector.getClass().getSimpleName());
+        }
+        assertNull(new CannyEdgeDetector.Builder().build().getEdgeStage());
+    }
+}
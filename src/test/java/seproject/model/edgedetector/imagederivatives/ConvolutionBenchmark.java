@@ -0,0 +1,83 @@
+package seproject.model.edgedetector.imagederivatives;
+
+import java.util.Random;
+
+import seproject.model.edgedetector.image.BytePlane;
+import seproject.model.edgedetector.util.Parallel;
+
+/**
+ * Measures the kernel sizes from which FFT convolution beats the direct and
+ * the separable loops. The results, as kernel area and as number of taps,
+ * are the defaults of ImageConvolution.FFT_CROSSOVER and FFT_CROSSOVER_SEPARABLE.
+ * <P> Not a unit test; run it from the test classpath, e.g.
+ * java -cp target/classes:target/test-classes ...ConvolutionBenchmark [image edge, default 1024]
+ */
+public class ConvolutionBenchmark {
+
+    private static final int RUNS = 3;
+    private static final int MAX_SIZE = 255;
+
+    public static void main(String[] args) {
+        int edge = args.length > 0 ? Integer.parseInt(args[0]) : 1024;
+        Random rand = new Random(1);
+        BytePlane image = new BytePlane(edge, edge);
+        rand.nextBytes(image.getData());
+        Parallel parallel = Parallel.sequential();
+
+        int crossover = -1;
+        int crossoverSeparable = -1;
+        System.out.println("size    direct(ms)  separable(ms)  fft(ms)  max |fft - direct|");
+        for (int size = 3; size <= MAX_SIZE && (crossover < 0 || crossoverSeparable < 0); size += 2) {
+            double[][] kernel = randomKernel(size, rand);
+            double[][] gaussian = ConvolutionKernel.generateGaussianKernel(size, size / 6.0);
+
+            double fft = time(image, kernel, ImageConvolution.Method.FFT, parallel);
+            double direct = crossover < 0 ? time(image, kernel, ImageConvolution.Method.DIRECT, parallel) : Double.NaN;
+            double separable = time(image, gaussian, ImageConvolution.Method.SEPARABLE, parallel);
+            int difference = crossover < 0 ? maxDifference(image, kernel, parallel) : -1;
+
+            System.out.printf("%4d %12.1f %14.1f %8.1f %8d%n", size, direct, separable, fft, difference);
+            if (crossover < 0 && fft < direct)
+                crossover = size;
+            if (crossoverSeparable < 0 && fft < separable)
+                crossoverSeparable = size;
+        }
+        // the crossovers are kernel area m * n and tap count m + n
+        System.out.println("FFT_CROSSOVER = " + (crossover < 0 ? "none up to " + MAX_SIZE * MAX_SIZE : crossover * crossover));
+        System.out.println("FFT_CROSSOVER_SEPARABLE = " + (crossoverSeparable < 0 ? "none up to " + 2 * MAX_SIZE : 2 * crossoverSeparable));
+    }
+
+    // Non-separable kernel with entries summing to 1
+    private static double[][] randomKernel(int size, Random rand) {
+        double[][] kernel = new double[size][size];
+        double sum = 0;
+        for (int k = 0; k < size; k++)
+            for (int l = 0; l < size; l++)
+                sum += kernel[k][l] = rand.nextDouble();
+        for (int k = 0; k < size; k++)
+            for (int l = 0; l < size; l++)
+                kernel[k][l] /= sum;
+        return kernel;
+    }
+
+    // Best of RUNS, in milliseconds
+    private static double time(BytePlane image, double[][] kernel, ImageConvolution.Method method, Parallel parallel) {
+        double best = Double.MAX_VALUE;
+        for (int run = 0; run < RUNS; run++) {
+            long start = System.nanoTime();
+            new ImageConvolution(image, kernel, method, parallel);
+            best = Math.min(best, (System.nanoTime() - start) / 1e6);
+        }
+        return best;
+    }
+
+    private static int maxDifference(BytePlane image, double[][] kernel, Parallel parallel) {
+        BytePlane direct = new ImageConvolution(image, kernel, ImageConvolution.Method.DIRECT, parallel).getConvolvedPlane();
+        BytePlane fft = new ImageConvolution(image, kernel, ImageConvolution.Method.FFT, parallel).getConvolvedPlane();
+        int max = 0;
+        for (int i = 0; i < direct.getRows(); i++)
+            for (int j = 0; j < direct.getColumns(); j++)
+                max = Math.max(max, Math.abs(direct.get(i, j) - fft.get(i, j)));
+        return max;
+    }
+}
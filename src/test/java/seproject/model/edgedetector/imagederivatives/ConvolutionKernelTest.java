@@ -0,0 +1,69 @@
+package seproject.model.edgedetector.imagederivatives;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import seproject.model.edgedetector.image.BytePlane;
+import seproject.model.edgedetector.util.Parallel;
+
+class ConvolutionKernelTest {
+
+    @Test
+    void gaussianVectorRoundsToTheIntegerTable() {
+        double[] vector = ConvolutionKernel.GAUSSIAN_VECTOR;
+        for (int k = 0; k < 5; k++)
+            for (int l = 0; l < 5; l++)
+                assertEquals(Math.round(ConvolutionKernel.GAUSSIAN_KERNEL[k][l] * 159),
+                        Math.round(vector[k] * vector[l] * 159), "entry " + k + ", " + l);
+    }
+
+    @Test
+    void gaussianSigmaIsTheLeastSquaresFit() {
+        double best = error(ConvolutionKernel.GAUSSIAN_SIGMA);
+        assertTrue(best < error(ConvolutionKernel.GAUSSIAN_SIGMA - 0.001));
+        assertTrue(best < error(ConvolutionKernel.GAUSSIAN_SIGMA + 0.001));
+        assertTrue(best < error(1.4));
+    }
+
+    @Test
+    void separableSmoothingStaysCloseToTheTable() {
+        Random random = new Random(7);
+        BytePlane noise = new BytePlane(67, 81);
+        BytePlane steps = new BytePlane(67, 81);
+        for (int i = 0; i < 67; i++)
+            for (int j = 0; j < 81; j++) {
+                noise.set(i, j, random.nextInt(256));
+                steps.set(i, j, (i / 9 + j / 13) % 2 == 0 ? 40 : 210);
+            }
+
+        assertMaxDifference(noise, 2);
+        assertMaxDifference(steps, 1);
+    }
+
+    private static void assertMaxDifference(BytePlane image, int bound) {
+        BytePlane table = new ImageConvolution(image, ConvolutionKernel.GAUSSIAN_KERNEL,
+                ImageConvolution.Method.DIRECT, Padding.SAME, Parallel.sequential()).getConvolvedPlane();
+        BytePlane separable = new ImageConvolution(image, ConvolutionKernel.GAUSSIAN_VECTOR,
+                ConvolutionKernel.GAUSSIAN_VECTOR, Padding.SAME, Parallel.sequential()).getConvolvedPlane();
+        int max = 0;
+        for (int i = 0; i < image.getRows(); i++)
+            for (int j = 0; j < image.getColumns(); j++)
+                max = Math.max(max, Math.abs(table.get(i, j) - separable.get(i, j)));
+        assertTrue(max <= bound, "max difference " + max);
+    }
+
+    private static double error(double sigma) {
+        double[] vector = ConvolutionKernel.generateGaussianVector(5, sigma);
+        double sum = 0;
+        for (int k = 0; k < 5; k++)
+            for (int l = 0; l < 5; l++) {
+                double d = vector[k] * vector[l] - ConvolutionKernel.GAUSSIAN_KERNEL[k][l];
+                sum += d * d;
+            }
+        return sum;
+    }
+}
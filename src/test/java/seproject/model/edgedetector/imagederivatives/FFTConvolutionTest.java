@@ -0,0 +1,109 @@
+package seproject.model.edgedetector.imagederivatives;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import seproject.model.edgedetector.image.BytePlane;
+import seproject.model.edgedetector.image.Plane;
+import seproject.model.edgedetector.image.ShortPlane;
+import seproject.model.edgedetector.imagederivatives.ImageConvolution.Method;
+import seproject.model.edgedetector.imagederivatives.ImageConvolution.Output;
+import seproject.model.edgedetector.util.Parallel;
+
+/**
+ * The overlap-save FFT path must give the DIRECT result. Images are larger
+ * than one tile, so outputs near tile edges are covered.
+ */
+class FFTConvolutionTest {
+
+    // Odd and even, square and non-square, down to a single tap
+    private static final int[][] SIZES = {{1, 1}, {3, 3}, {1, 7}, {5, 3}, {4, 6}, {9, 9}, {17, 1}, {13, 21}};
+
+    private static final Padding[] PADDINGS = {null, Padding.ZEROS, Padding.SAME, Padding.SYMMETRIC, Padding.CIRCULAR};
+
+    @Test
+    void integerKernelsMatchDirectExactly() {
+        Random rand = new Random(5);
+        BytePlane image = randomImage(rand, 150, 173);
+        for (int[] size : SIZES) {
+            // integer responses: the FFT must land on them despite its round-off
+            double[][] kernel = new double[size[0]][size[1]];
+            for (double[] row : kernel)
+                for (int l = 0; l < row.length; l++)
+                    row[l] = rand.nextInt(9) - 4;
+            for (Padding padding : PADDINGS)
+                for (Output output : Output.values())
+                    assertEquals(0, maxDifference(image, kernel, padding, output),
+                            describe(size, padding, output));
+        }
+    }
+
+    @Test
+    void realKernelsMatchDirectUpToTruncation() {
+        Random rand = new Random(6);
+        BytePlane image = randomImage(rand, 131, 140);
+        for (int[] size : SIZES) {
+            double[][] kernel = new double[size[0]][size[1]];
+            for (double[] row : kernel)
+                for (int l = 0; l < row.length; l++)
+                    row[l] = rand.nextGaussian() / (size[0] * size[1]);
+            for (Padding padding : PADDINGS)
+                for (Output output : Output.values()) {
+                    int difference = maxDifference(image, kernel, padding, output);
+                    assertTrue(difference <= 1, describe(size, padding, output) + ": " + difference);
+                }
+        }
+    }
+
+    @Test
+    void autoChoosesByKernelArea() {
+        BytePlane image = randomImage(new Random(7), 40, 40);
+        // long but thin: 62 taps, far below the crossover area
+        double[][] thin = new double[2][31];
+        thin[0][0] = 1;
+        thin[1][30] = -1;
+        assertEquals(Method.DIRECT, new ImageConvolution(image, thin, Method.AUTO, Parallel.sequential()).getMethod());
+
+        double[][] large = new double[27][27];
+        large[0][0] = 1;
+        large[26][1] = 1;
+        assertEquals(Method.FFT, new ImageConvolution(image, large, Method.AUTO, Parallel.sequential()).getMethod());
+
+        double[][] small = new double[3][5];
+        small[0][0] = 1;
+        small[2][1] = 1;
+        assertEquals(Method.DIRECT, new ImageConvolution(image, small, Method.AUTO, Parallel.sequential()).getMethod());
+    }
+
+    private static int maxDifference(BytePlane image, double[][] kernel, Padding padding, Output output) {
+        ImageConvolution direct = new ImageConvolution(image, kernel, Method.DIRECT, padding, output, Parallel.sequential());
+        ImageConvolution fft = new ImageConvolution(image, kernel, Method.FFT, padding, output, Parallel.sequential());
+        Plane a = output == Output.SIGNED ? direct.getSignedPlane() : direct.getConvolvedPlane();
+        Plane b = output == Output.SIGNED ? fft.getSignedPlane() : fft.getConvolvedPlane();
+        assertEquals(a.getRows(), b.getRows());
+        assertEquals(a.getColumns(), b.getColumns());
+        int max = 0;
+        for (int i = 0; i < a.getRows(); i++)
+            for (int j = 0; j < a.getColumns(); j++)
+                max = Math.max(max, Math.abs(get(a, i, j) - get(b, i, j)));
+        return max;
+    }
+
+    private static int get(Plane plane, int row, int col) {
+        return plane instanceof ShortPlane ? ((ShortPlane) plane).get(row, col) : ((BytePlane) plane).get(row, col);
+    }
+
+    private static BytePlane randomImage(Random rand, int rows, int columns) {
+        BytePlane image = new BytePlane(rows, columns);
+        rand.nextBytes(image.getData());
+        return image;
+    }
+
+    private static String describe(int[] size, Padding padding, Output output) {
+        return size[0] + "x" + size[1] + " " + (padding == null ? "valid" : padding) + " " + output;
+    }
+}
@@ -0,0 +1,43 @@
+package seproject.model.edgedetector.imagederivatives;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import seproject.model.edgedetector.image.BytePlane;
+import seproject.model.edgedetector.image.ShortPlane;
+
+class ImageGradientTest {
+
+    // The row-wise magnitude must equal the per-pixel formula on the components
+    @Test
+    void magnitudeMatchesTheComponents() {
+        Random random = new Random(5);
+        BytePlane image = new BytePlane(23, 71);
+        for (int i = 0; i < image.getRows(); i++)
+            for (int j = 0; j < image.getColumns(); j++)
+                image.set(i, j, random.nextInt(256));
+
+        for (GradientOperator operator : GradientOperator.values()) {
+            for (boolean L1norm : new boolean[] {false, true}) {
+                ImageGradient gradient = new ImageGradient.Builder(image, operator)
+                        .L1norm(L1norm)
+                        .components(true)
+                        .build();
+                ShortPlane magnitude = gradient.getMagnitude();
+                for (int i = 0; i < image.getRows(); i++) {
+                    for (int j = 0; j < image.getColumns(); j++) {
+                        int G_x = gradient.getX().get(i, j);
+                        int G_y = gradient.getY().get(i, j);
+                        int expected = L1norm ? Math.abs(G_x) + Math.abs(G_y)
+                                : (int) Math.sqrt(G_x * G_x + G_y * G_y);
+                        assertEquals(expected, magnitude.get(i, j),
+                                operator + (L1norm ? " L1" : " L2") + " at " + i + ", " + j);
+                    }
+                }
+            }
+        }
+    }
+}
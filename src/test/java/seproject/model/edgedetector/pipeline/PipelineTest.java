@@ -0,0 +1,67 @@
+package seproject.model.edgedetector.pipeline;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+import seproject.model.edgedetector.image.BytePlane;
+import seproject.model.edgedetector.util.Parallel;
+
+class PipelineTest {
+
+    @Test
+    void interruptStopsTheRunningStageAndKeepsItUncached() {
+        Pipeline pipeline = new Pipeline(new BytePlane(4, 4));
+        AtomicInteger rows = new AtomicInteger();
+        Stage<Integer> slow = Stage.of("slow", Stages.IMAGE, image -> {
+            Parallel.sequential().forEachBand(1000, 1, (from, to) -> {
+                rows.addAndGet(to - from);
+                Thread.currentThread().interrupt();
+            });
+            return rows.get();
+        });
+
+        try {
+            assertThrows(CancellationException.class, () -> pipeline.get(slow));
+        } finally {
+            Thread.interrupted();
+        }
+        assertTrue(rows.get() < 1000, "every row ran");
+        assertFalse(pipeline.contains(slow));
+    }
+
+    @Test
+    void cachedStagesStayReadableWhileAStageComputes() throws Exception {
+        Pipeline pipeline = new Pipeline(new BytePlane(4, 4));
+        pipeline.get(Stages.IMAGE);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Stage<Integer> blocking = Stage.of("blocking", Stages.IMAGE, image -> {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                throw new CancellationException();
+            }
+            return 42;
+        });
+
+        Thread worker = new Thread(() -> pipeline.get(blocking));
+        worker.start();
+        assertTrue(started.await(10, TimeUnit.SECONDS));
+        // would block on the pipeline's lock if it was held during the computation
+        assertTrue(pipeline.contains(Stages.IMAGE));
+        assertFalse(pipeline.contains(blocking));
+        release.countDown();
+        worker.join(10_000);
+        assertEquals(42, pipeline.get(blocking));
+    }
+}
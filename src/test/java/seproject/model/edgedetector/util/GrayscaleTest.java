@@ -0,0 +1,58 @@
+package seproject.model.edgedetector.util;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+class GrayscaleTest {
+
+    private static final int[] TYPES = {
+            BufferedImage.TYPE_3BYTE_BGR, BufferedImage.TYPE_4BYTE_ABGR, BufferedImage.TYPE_INT_RGB,
+            BufferedImage.TYPE_INT_ARGB, BufferedImage.TYPE_BYTE_GRAY, BufferedImage.TYPE_INT_BGR,
+            BufferedImage.TYPE_USHORT_565_RGB
+    };
+
+    @Test
+    void convertToGrayscaleMatchesSetRGB() {
+        Random random = new Random(1);
+        for (int type : TYPES) {
+            BufferedImage image = randomImage(37, 23, type, random);
+            assertArrayEquals(samples(setRGBGrayscale(image)), samples(Grayscale.convertToGrayscale(image)),
+                    "image type " + type);
+
+            // sub-images read through the offsets of their parent's buffer
+            BufferedImage sub = image.getSubimage(5, 3, 20, 15);
+            assertArrayEquals(samples(setRGBGrayscale(sub)), samples(Grayscale.convertToGrayscale(sub)),
+                    "sub-image of type " + type);
+        }
+    }
+
+    // The per-pixel conversion convertToGrayscale replaces
+    private static BufferedImage setRGBGrayscale(BufferedImage image) {
+        BufferedImage grayImage = new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_BYTE_GRAY);
+        for (int y = 0; y < image.getHeight(); y++) {
+            for (int x = 0; x < image.getWidth(); x++) {
+                int rgb = image.getRGB(x, y);
+                int gray = (((rgb >> 16) & 0xFF) + ((rgb >> 8) & 0xFF) + (rgb & 0xFF)) / 3;
+                grayImage.setRGB(x, y, (gray << 16) | (gray << 8) | gray);
+            }
+        }
+        return grayImage;
+    }
+
+    private static BufferedImage randomImage(int width, int height, int type, Random random) {
+        BufferedImage image = new BufferedImage(width, height, type);
+        for (int y = 0; y < height; y++)
+            for (int x = 0; x < width; x++)
+                image.setRGB(x, y, random.nextInt());
+        return image;
+    }
+
+    private static byte[] samples(BufferedImage grayImage) {
+        return ((DataBufferByte) grayImage.getRaster().getDataBuffer()).getData();
+    }
+}
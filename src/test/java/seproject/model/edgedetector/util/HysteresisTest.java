@@ -0,0 +1,94 @@
+package seproject.model.edgedetector.util;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import seproject.model.edgedetector.image.EdgeMask;
+import seproject.model.edgedetector.image.ShortPlane;
+
+/**
+ * The parallel union-find must mark exactly the pixels of the sequential
+ * flood fill, whatever the tiling.
+ */
+class HysteresisTest {
+
+    private static final int[] PARALLELISM = {2, 3, 4, 8};
+    private static final int[] MIN_EDGE_SIZES = {0, 1, 5, 40};
+
+    @Test
+    void parallelMatchesSequentialOnRandomPlanes() {
+        Random random = new Random(11);
+        int[][] sizes = {{1, 1}, {1, 97}, {97, 1}, {33, 40}, {200, 150}, {257, 63}};
+        for (int[] size : sizes)
+            for (int trial = 0; trial < 3; trial++)
+                assertSameEdges(randomPlane(random, size[0], size[1]), 30, 70);
+    }
+
+    @Test
+    void parallelMatchesSequentialOnLongCurves() {
+        // components crossing many tile borders, forwards and backwards
+        Random random = new Random(12);
+        for (int trial = 0; trial < 5; trial++)
+            assertSameEdges(curves(random, 300, 120), 20, 90);
+    }
+
+    @Test
+    void parallelMatchesSequentialOnSubPlanes() {
+        Random random = new Random(13);
+        ShortPlane plane = curves(random, 260, 140);
+        assertSameEdges(plane.subPlane(7, 5, 240, 120), 20, 90);
+    }
+
+    @Test
+    void everythingAndNothingAboveThresholds() {
+        ShortPlane flat = new ShortPlane(130, 70);
+        for (int i = 0; i < 130; i++)
+            for (int j = 0; j < 70; j++)
+                flat.set(i, j, 100);
+        assertSameEdges(flat, 50, 80);
+        assertSameEdges(flat, 150, 200);
+    }
+
+    private static void assertSameEdges(ShortPlane magnitude, int low, int high) {
+        for (int minEdgeSize : MIN_EDGE_SIZES) {
+            EdgeMask expected = Hysteresis.hysteresis(magnitude, low, high, minEdgeSize);
+            for (int parallelism : PARALLELISM) {
+                EdgeMask actual = Hysteresis.parallelHysteresis(magnitude, low, high, minEdgeSize,
+                        Parallel.withParallelism(parallelism));
+                assertArrayEquals(expected.getWords(), actual.getWords(),
+                        magnitude.getRows() + "x" + magnitude.getColumns() + ", minEdgeSize " + minEdgeSize
+                                + ", parallelism " + parallelism);
+            }
+        }
+    }
+
+    // Noise with a fraction of weak and strong pixels
+    private static ShortPlane randomPlane(Random random, int rows, int columns) {
+        ShortPlane plane = new ShortPlane(rows, columns);
+        for (int i = 0; i < rows; i++)
+            for (int j = 0; j < columns; j++)
+                plane.set(i, j, random.nextInt(100));
+        return plane;
+    }
+
+    // Random walks of weak pixels with a few strong ones, over low noise
+    private static ShortPlane curves(Random random, int rows, int columns) {
+        ShortPlane plane = new ShortPlane(rows, columns);
+        for (int i = 0; i < rows; i++)
+            for (int j = 0; j < columns; j++)
+                plane.set(i, j, random.nextInt(25));
+        for (int walk = 0; walk < 30; walk++) {
+            int i = random.nextInt(rows);
+            int j = random.nextInt(columns);
+            for (int step = 0; step < 400; step++) {
+                plane.set(i, j, random.nextInt(10) == 0 ? 95 : 40);
+                i = Math.min(rows - 1, Math.max(0, i + random.nextInt(3) - 1));
+                j = Math.min(columns - 1, Math.max(0, j + random.nextInt(3) - 1));
+            }
+        }
+        return plane;
+    }
+}
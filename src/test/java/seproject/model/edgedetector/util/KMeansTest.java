@@ -0,0 +1,78 @@
+package seproject.model.edgedetector.util;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+class KMeansTest {
+
+    @Test
+    void histogramMatchesPerPointClusteringOfUnsortedPixels() {
+        Random random = new Random(21);
+        for (int trial = 0; trial < 4; trial++) {
+            // magnitude-like pixels: mostly zero, a smear of weak and a few strong values
+            int n = 20000 + random.nextInt(5000);
+            double[][] pixels = new double[n][1];
+            int[] counts = new int[256];
+            for (int i = 0; i < n; i++) {
+                int value = random.nextInt(3) == 0 ? 0
+                        : random.nextInt(10) == 0 ? 150 + random.nextInt(106) : random.nextInt(80);
+                pixels[i][0] = value;
+                counts[value]++;
+            }
+            double[] values = new double[256];
+            for (int v = 0; v < 256; v++)
+                values[v] = v;
+
+            for (boolean pp : new boolean[] {false, true})
+                for (long seed = 1; seed <= 5; seed++) {
+                    KMeans perPoint = new KMeans.Builder(3, pixels).seed(seed).pp(pp)
+                            .iterations(10).epsilon(.01).useEpsilon(true).build();
+                    KMeans histogram = new KMeans.Builder(3, values, counts).seed(seed).pp(pp)
+                            .iterations(10).epsilon(.01).useEpsilon(true).build();
+                    String what = "trial " + trial + ", seed " + seed + ", pp " + pp;
+                    assertArrayEquals(perPoint.getCentroids(), histogram.getCentroids(), what);
+                    assertEquals(perPoint.getIterations(), histogram.getIterations(), what);
+                }
+        }
+    }
+
+    @Test
+    void histogramBinsMayComeInAnyOrder() {
+        double[] values = {8, 1, 3, 5};
+        int[] counts = {1, 2, 3, 0};
+        double[] sortedValues = {1, 3, 5, 8};
+        int[] sortedCounts = {2, 3, 0, 1};
+        for (long seed = 0; seed < 10; seed++)
+            assertArrayEquals(new KMeans.Builder(2, sortedValues, sortedCounts).seed(seed).pp(true).build().getCentroids(),
+                    new KMeans.Builder(2, values, counts).seed(seed).pp(true).build().getCentroids());
+    }
+
+    @Test
+    void separatesTwoDimensionalClusters() {
+        double[][] points = {{1.0, 2.0}, {2.0, 3.0}, {4.0, 5.0}, {7.0, 8.0}, {8.0, 9.0}};
+        double[][] centroids = new KMeans.Builder(2, points).pp(true).seed(3).build().getCentroids();
+        Arrays.sort(centroids, (a, b) -> Double.compare(a[0], b[0]));
+        assertArrayEquals(new double[] {7.0 / 3, 10.0 / 3}, centroids[0], 1e-12);
+        assertArrayEquals(new double[] {7.5, 8.5}, centroids[1], 1e-12);
+    }
+
+    @Test
+    void resultDoesNotDependOnParallelism() {
+        Random random = new Random(3);
+        double[] blobs = new double[3 * 20000 * 2];
+        for (int i = 0; i < blobs.length / 2; i++) {
+            int blob = i % 3;
+            blobs[2 * i] = blob * 10 + random.nextGaussian();
+            blobs[2 * i + 1] = blob * -5 + random.nextGaussian();
+        }
+        KMeans sequential = new KMeans.Builder(3, blobs, 2).pp(true).seed(11).parallel(Parallel.sequential()).build();
+        KMeans parallel = new KMeans.Builder(3, blobs, 2).pp(true).seed(11).parallel(Parallel.withParallelism(4)).build();
+        assertArrayEquals(sequential.getCentroids(), parallel.getCentroids());
+        assertArrayEquals(sequential.getLabels(), parallel.getLabels());
+    }
+}
@@ -0,0 +1,54 @@
+package seproject.model.edgedetector.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import org.junit.jupiter.api.Test;
+
+class ParallelTest {
+
+    @Test
+    void withParallelismReusesOnePoolPerLevel() {
+        assertSame(Parallel.withParallelism(3), Parallel.withParallelism(3));
+        assertSame(Parallel.sequential(), Parallel.withParallelism(1));
+        assertEquals(3, Parallel.withParallelism(3).getParallelism());
+    }
+
+    @Test
+    void everyRowRunsExactlyOnce() {
+        for (int parallelism : new int[] {1, 2, 3, 8}) {
+            AtomicIntegerArray runs = new AtomicIntegerArray(1000);
+            Parallel.withParallelism(parallelism).forEachBand(1000, 1, (from, to) -> {
+                for (int row = from; row < to; row++)
+                    runs.incrementAndGet(row);
+            });
+            for (int row = 0; row < 1000; row++)
+                assertEquals(1, runs.get(row), "row " + row + " with parallelism " + parallelism);
+        }
+    }
+
+    // Bands run on pool threads, the interrupt is on the thread that asked for them
+    @Test
+    void interruptingTheCallerStopsTheRemainingBands() {
+        for (int parallelism : new int[] {1, 4}) {
+            Thread caller = Thread.currentThread();
+            AtomicInteger rows = new AtomicInteger();
+            try {
+                assertThrows(CancellationException.class, () ->
+                        Parallel.withParallelism(parallelism).forEachBand(100_000, 1, (from, to) -> {
+                            rows.addAndGet(to - from);
+                            caller.interrupt();
+                        }));
+            } finally {
+                Thread.interrupted();
+            }
+            assertTrue(rows.get() < 100_000, "every row ran with parallelism " + parallelism);
+        }
+    }
+}
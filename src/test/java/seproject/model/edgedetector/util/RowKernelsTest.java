@@ -0,0 +1,101 @@
+package seproject.model.edgedetector.util;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * The vector backend must match the scalar one bit for bit, for every length
+ * including the tails that do not fill a vector.
+ */
+class RowKernelsTest {
+
+    private static final int MAX_LENGTH = 200;
+
+    private final RowKernels scalar = RowKernels.scalar();
+    private RowKernels vector;
+    private Random rand;
+
+    @BeforeEach
+    void setUp() {
+        vector = RowKernels.vector();
+        assumeTrue(vector != null, "jdk.incubator.vector is not available");
+        rand = new Random(42);
+    }
+
+    @Test
+    void multiplyAdd() {
+        for (int length = 0; length < MAX_LENGTH; length++) {
+            double[] src = new double[length + 3];
+            for (int j = 0; j < src.length; j++)
+                src[j] = rand.nextInt(256);
+            double weight = rand.nextGaussian();
+
+            double[] accScalar = new double[length];
+            double[] accVector = new double[length];
+            for (int offset = 0; offset < 3; offset++) {
+                scalar.multiplyAdd(weight, src, offset, accScalar, length);
+                vector.multiplyAdd(weight, src, offset, accVector, length);
+            }
+            assertArrayEquals(accScalar, accVector, "length " + length);
+        }
+    }
+
+    @Test
+    void clampToBytes() {
+        for (int length = 0; length < MAX_LENGTH; length++) {
+            double[] values = new double[length];
+            for (int j = 0; j < length; j++)
+                values[j] = rand.nextDouble() * 400 - 100;
+            byte[] bytesScalar = new byte[length + 2];
+            byte[] bytesVector = new byte[length + 2];
+            scalar.clampToBytes(values.clone(), bytesScalar, 1, length);
+            vector.clampToBytes(values.clone(), bytesVector, 1, length);
+            assertArrayEquals(bytesScalar, bytesVector, "length " + length);
+        }
+    }
+
+    @Test
+    void clampToShorts() {
+        for (int length = 0; length < MAX_LENGTH; length++) {
+            double[] values = new double[length];
+            for (int j = 0; j < length; j++)
+                values[j] = rand.nextDouble() * 80000 - 40000;
+            short[] shortsScalar = new short[length + 2];
+            short[] shortsVector = new short[length + 2];
+            scalar.clampToShorts(values.clone(), shortsScalar, 1, length);
+            vector.clampToShorts(values.clone(), shortsVector, 1, length);
+            assertArrayEquals(shortsScalar, shortsVector, "length " + length);
+        }
+    }
+
+    // Inputs span the gradient range of ImageGradient, |G| <= 4080 for Scharr
+    @Test
+    void hypot() {
+        for (int length = 0; length < MAX_LENGTH; length++) {
+            double[] x = new double[length];
+            double[] y = new double[length];
+            for (int j = 0; j < length; j++) {
+                x[j] = rand.nextInt(8161) - 4080;
+                y[j] = rand.nextInt(8161) - 4080;
+            }
+            double[] hypotScalar = new double[length];
+            double[] hypotVector = new double[length];
+            scalar.hypot(x, y, hypotScalar, length);
+            vector.hypot(x, y, hypotVector, length);
+            assertArrayEquals(hypotScalar, hypotVector, "length " + length);
+
+            // the magnitude ImageGradient stores
+            for (int j = 0; j < length; j++) {
+                int G_x = (int) x[j];
+                int G_y = (int) y[j];
+                assertEquals((int) Math.sqrt(G_x * G_x + G_y * G_y), (int) hypotVector[j], "length " + length);
+            }
+        }
+    }
+}